@@ -0,0 +1,23 @@
+package com.goldthumb.chess.bench;
+
+final class BenchmarkPositions {
+    static final String OPENING = "r1bqkbnr/pppp1ppp/2n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 3 3";
+    static final String MIDDLEGAME = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    static final String ENDGAME = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+
+    private BenchmarkPositions() {
+    }
+
+    static String fen(String name) {
+        switch (name) {
+            case "opening":
+                return OPENING;
+            case "middlegame":
+                return MIDDLEGAME;
+            case "endgame":
+                return ENDGAME;
+            default:
+                throw new IllegalArgumentException("Unknown benchmark position: " + name);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.goldthumb.chess.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.goldthumb.chess.Bitboards;
+import com.goldthumb.chess.ChessModel;
+import com.goldthumb.chess.ChessPiece;
+import com.goldthumb.chess.Move;
+import com.goldthumb.chess.Player;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessModelBenchmark {
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String position;
+
+    private ChessModel model;
+    private Player sideToMove;
+    private long ownPieces;
+    private final int[] legalMoves = new int[ChessModel.MAX_MOVES];
+    private int legalMoveCount;
+    private final int[] buffer = new int[ChessModel.MAX_MOVES];
+
+    @Setup
+    public void setUp() {
+        String fen = BenchmarkPositions.fen(position);
+        model = new ChessModel();
+        model.loadFen(fen);
+        sideToMove = fen.split(" ")[1].equals("b") ? Player.BLACK : Player.WHITE;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = model.pieceAt(Bitboards.col(square), Bitboards.row(square));
+            if (piece != null && piece.getPlayer() == sideToMove) {
+                ownPieces |= 1L << square;
+            }
+        }
+        legalMoveCount = model.generateLegalMoves(legalMoves);
+    }
+
+    @Benchmark
+    public void pieceAt(Blackhole bh) {
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                bh.consume(model.pieceAt(col, row));
+            }
+        }
+    }
+
+    // Every target square for every piece of the side to move, like the old checkmate scan
+    @Benchmark
+    public void isValidMove(Blackhole bh) {
+        for (long pieces = ownPieces; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            for (int to = 0; to < 64; to++) {
+                bh.consume(model.isValidMove(Bitboards.col(from), Bitboards.row(from),
+                        Bitboards.col(to), Bitboards.row(to)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void isMoveValidToEscapeCheck(Blackhole bh) {
+        for (int i = 0; i < legalMoveCount; i++) {
+            int from = Move.from(legalMoves[i]);
+            int to = Move.to(legalMoves[i]);
+            bh.consume(model.isMoveValidToEscapeCheck(Bitboards.col(from), Bitboards.row(from),
+                    Bitboards.col(to), Bitboards.row(to)));
+        }
+    }
+
+    @Benchmark
+    public boolean isCheckmate() {
+        return model.isCheckmate(sideToMove);
+    }
+
+    @Benchmark
+    public int generateLegalMoves() {
+        return model.generateLegalMoves(buffer);
+    }
+
+    // What a search leaf costs: make the move, read the static evaluation, take it back
+    @Benchmark
+    public void makeEvaluateUnmake(Blackhole bh) {
+        for (int i = 0; i < legalMoveCount; i++) {
+            model.makeMove(legalMoves[i]);
+            bh.consume(model.evaluate());
+            model.unmakeMove();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.goldthumb.chess.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.goldthumb.chess.ChessModel;
+import com.goldthumb.chess.SearchEngine;
+import com.goldthumb.chess.SearchLimits;
+import com.goldthumb.chess.SearchResult;
+
+// Time-to-depth of the Lazy SMP search on the benchmark positions for a range of thread counts.
+// Every run starts from an empty transposition table so runs do not help each other.
+//
+//   java -cp benchmarks.jar com.goldthumb.chess.bench.SearchScaling [--depth N] [--hash MB] [threads...]
+public final class SearchScaling {
+    private static final String[] POSITIONS = {"opening", "middlegame", "endgame"};
+
+    private SearchScaling() {
+    }
+
+    public static void main(String[] args) {
+        int depth = 9;
+        int hashMb = 64;
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--hash":
+                    hashMb = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    threadCounts.add(Integer.parseInt(args[i]));
+            }
+        }
+        if (threadCounts.isEmpty()) {
+            for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+                threadCounts.add(threads);
+            }
+        }
+
+        // Warm up the JIT before anything is timed
+        for (String name : POSITIONS) {
+            search(name, hashMb, 1, Math.max(1, depth - 2));
+        }
+
+        long baseline = 0;
+        System.out.printf("%8s %12s %14s %12s %8s%n", "threads", "time ms", "nodes", "nps", "speedup");
+        for (int threads : threadCounts) {
+            long millis = 0;
+            long nodes = 0;
+            for (String name : POSITIONS) {
+                SearchResult result = search(name, hashMb, threads, depth);
+                millis += result.getElapsedMillis();
+                nodes += result.getNodes();
+            }
+            millis = Math.max(1, millis);
+            if (baseline == 0) {
+                baseline = millis;
+            }
+            System.out.printf("%8d %12d %14d %12d %8.2f%n", threads, millis, nodes, nodes * 1000 / millis,
+                    (double) baseline / millis);
+        }
+    }
+
+    private static SearchResult search(String name, int hashMb, int threads, int depth) {
+        ChessModel model = new ChessModel();
+        model.loadFen(BenchmarkPositions.fen(name));
+        return new SearchEngine(hashMb, threads).search(model, SearchLimits.depth(depth));
+    }
+}
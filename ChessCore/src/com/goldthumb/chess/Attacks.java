@@ -0,0 +1,180 @@
+package com.goldthumb.chess;
+
+// Precomputed attack sets. Sliders use magic bitboards: the relevant
+// blockers are multiplied by a per-square magic and shifted down to an
+// index into a shared attack table. The magics were found by trying
+// sparse random numbers until no two blocker sets collided.
+final class Attacks {
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    private static final long[] ROOK_MAGICS = {
+        0x00800140009CE080L, 0x2340001000200540L, 0x0100100844200100L, 0x0180280110008004L,
+        0x4200040802002010L, 0x0580111200040080L, 0x1900050008A40200L, 0x0500010000205082L,
+        0x202180004001A080L, 0x0100802000804000L, 0x0112001200844420L, 0x0029001000240900L,
+        0x0010800800800400L, 0x000E000200480450L, 0x0104000164081082L, 0x4082002104004C82L,
+        0x8E00948000400024L, 0x406001C030004001L, 0x0004220010460480L, 0x0000808010000800L,
+        0x0005010008001004L, 0x002C808004000201L, 0x0401808001000200L, 0x90000A0001005884L,
+        0x2042208180004004L, 0x9000200140100040L, 0x0002024200128221L, 0x0008080080801000L,
+        0x0008080080040080L, 0x0004040080020080L, 0x8011001100020014L, 0x4080008200204904L,
+        0x00028940088000A0L, 0x6000201000404000L, 0x0046801004802000L, 0x2414801000800800L,
+        0x3047800400800802L, 0x0080800400800200L, 0x4A00284214000110L, 0xA022800040800100L,
+        0x0040004080228004L, 0x0004201000444000L, 0x0B10402009010011L, 0x0010080010008080L,
+        0x2028000804008080L, 0x2900020004008080L, 0x2044010002008080L, 0x0400408100420004L,
+        0x0080204A01088200L, 0x2003002084401900L, 0x052A044020801600L, 0x00D0080030008180L,
+        0x2020080004008080L, 0x1039000804002300L, 0x0090100208018400L, 0x0012810400804200L,
+        0x0000201080004101L, 0x0004822012004102L, 0x2005000820014291L, 0x4009100009000521L,
+        0x000A002008041002L, 0x0901000400080201L, 0x4801004C82000421L, 0x0011000441823201L,
+    };
+    private static final long[] BISHOP_MAGICS = {
+        0x0042600424004040L, 0x51102C0842902000L, 0x120408408D00C0A1L, 0x04080A0020000000L,
+        0x9421104000000200L, 0x24020A3004620004L, 0x2020880190100008L, 0x0421C2020082C000L,
+        0x0505450404082E00L, 0x4000830801090200L, 0x440C040410860402L, 0x8120544102600580L,
+        0x0000411040120100L, 0x0000120202204030L, 0x0C008180B058600EL, 0x0000002608041401L,
+        0x8808012020810230L, 0x082100060C03060AL, 0x12080050004011A0L, 0x1808421404028800L,
+        0x000B000090400000L, 0x1042200500884010L, 0x0454000854040400L, 0x0002000442289400L,
+        0x8011400409020400L, 0x0008080004104082L, 0x0801044130015200L, 0x2209080021004100L,
+        0x020100106D004020L, 0x0410190014814500L, 0x1084004204A80404L, 0x81015D0454440A08L,
+        0x0122084000041018L, 0x0201082014022400L, 0x2002031001110A40L, 0x0000042008040100L,
+        0x0004040400401010L, 0x0240C08200810102L, 0x0202008100841402L, 0x00C8104100004100L,
+        0x1000D00420841040L, 0x1026280208000282L, 0x1089008024044084L, 0x3030004202200801L,
+        0x0014082101134400L, 0x0020200900401208L, 0x0060828200404A00L, 0x0018408082801A00L,
+        0x2800808808401040L, 0x20808200A22040A0L, 0x6028002201100000L, 0xA00400008404460AL,
+        0x8000004110410080L, 0xA0080405582A0402L, 0x0004040404440908L, 0x8002080101260840L,
+        0xC840E06C10081801L, 0x0000002208040400L, 0x0200408020841000L, 0x200A000000840C44L,
+        0x0060000010420880L, 0xB204000604080201L, 0x001020C832084040L, 0x4210040808004010L,
+    };
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] SLIDER_TABLE;
+
+    private static final int[][] KNIGHT_STEPS = {
+        {1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2},
+    };
+    private static final int[][] KING_STEPS = {
+        {1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1},
+    };
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {-1, 1}, {-1, -1}, {1, -1}};
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT[square] = stepAttacks(square, KNIGHT_STEPS);
+            KING[square] = stepAttacks(square, KING_STEPS);
+            PAWN[Player.WHITE.ordinal()][square] = stepAttacks(square, new int[][] {{-1, 1}, {1, 1}});
+            PAWN[Player.BLACK.ordinal()][square] = stepAttacks(square, new int[][] {{-1, -1}, {1, -1}});
+        }
+
+        int size = 0;
+        for (int square = 0; square < 64; square++) {
+            ROOK_MASKS[square] = relevantBlockers(square, ROOK_DIRECTIONS);
+            BISHOP_MASKS[square] = relevantBlockers(square, BISHOP_DIRECTIONS);
+            ROOK_OFFSETS[square] = size;
+            size += 1 << Long.bitCount(ROOK_MASKS[square]);
+            BISHOP_OFFSETS[square] = size;
+            size += 1 << Long.bitCount(BISHOP_MASKS[square]);
+        }
+        SLIDER_TABLE = new long[size];
+
+        for (int square = 0; square < 64; square++) {
+            ROOK_SHIFTS[square] = 64 - Long.bitCount(ROOK_MASKS[square]);
+            BISHOP_SHIFTS[square] = 64 - Long.bitCount(BISHOP_MASKS[square]);
+            fillSliderTable(square, ROOK_DIRECTIONS, ROOK_MASKS[square], ROOK_MAGICS[square],
+                    ROOK_SHIFTS[square], ROOK_OFFSETS[square]);
+            fillSliderTable(square, BISHOP_DIRECTIONS, BISHOP_MASKS[square], BISHOP_MAGICS[square],
+                    BISHOP_SHIFTS[square], BISHOP_OFFSETS[square]);
+        }
+    }
+
+    private Attacks() {
+    }
+
+    static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    static long king(int square) {
+        return KING[square];
+    }
+
+    // Squares a pawn of the given player on square attacks
+    static long pawn(Player player, int square) {
+        return PAWN[player.ordinal()][square];
+    }
+
+    static long rook(int square, long occupied) {
+        long index = ((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square];
+        return SLIDER_TABLE[ROOK_OFFSETS[square] + (int) index];
+    }
+
+    static long bishop(int square, long occupied) {
+        long index = ((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square];
+        return SLIDER_TABLE[BISHOP_OFFSETS[square] + (int) index];
+    }
+
+    static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    private static long stepAttacks(int square, int[][] steps) {
+        long attacks = 0;
+        for (int[] step : steps) {
+            int col = Bitboards.col(square) + step[0];
+            int row = Bitboards.row(square) + step[1];
+            if (Bitboards.onBoard(col, row)) {
+                attacks |= Bitboards.bit(Bitboards.square(col, row));
+            }
+        }
+        return attacks;
+    }
+
+    // Squares whose occupancy can change the attack set; the last square of each ray never can
+    private static long relevantBlockers(int square, int[][] directions) {
+        long mask = 0;
+        for (int[] direction : directions) {
+            int col = Bitboards.col(square) + direction[0];
+            int row = Bitboards.row(square) + direction[1];
+            while (Bitboards.onBoard(col + direction[0], row + direction[1])) {
+                mask |= Bitboards.bit(Bitboards.square(col, row));
+                col += direction[0];
+                row += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0;
+        for (int[] direction : directions) {
+            int col = Bitboards.col(square) + direction[0];
+            int row = Bitboards.row(square) + direction[1];
+            while (Bitboards.onBoard(col, row)) {
+                long b = Bitboards.bit(Bitboards.square(col, row));
+                attacks |= b;
+                if ((occupied & b) != 0) {
+                    break;
+                }
+                col += direction[0];
+                row += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static void fillSliderTable(int square, int[][] directions, long mask, long magic,
+            int shift, int offset) {
+        // Enumerate every subset of the mask (Carry-Rippler)
+        long blockers = 0;
+        do {
+            int index = (int) ((blockers * magic) >>> shift);
+            SLIDER_TABLE[offset + index] = slidingAttacks(square, blockers, directions);
+            blockers = (blockers - mask) & mask;
+        } while (blockers != 0);
+    }
+}
@@ -0,0 +1,303 @@
+package com.goldthumb.chess;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Win/draw bitbases for king and queen, rook or pawn against a lone king.
+// They are built by retrograde analysis on the local machine, written to one
+// file per ending and probed through memory-mapped files.
+//
+// Every table holds one bit per position, set when the side with the extra piece
+// wins. Positions are indexed with the strong side as White, so Black's wins are
+// looked up with the board mirrored:
+//   side to move (strong 0, weak 1) * 64^3 + strong king * 64^2 + weak king * 64 + piece
+//
+//   Bitbases <directory>
+public final class Bitbases {
+    // Probe results from the side to move's point of view
+    public static final int LOSS = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+    public static final int UNKNOWN = 2;
+
+    private static final Rank[] ENDINGS = {Rank.QUEEN, Rank.ROOK, Rank.PAWN};
+    private static final String[] FILE_NAMES = {"kqk.bb", "krk.bb", "kpk.bb"};
+
+    private static final int POSITIONS = 2 * 64 * 64 * 64;
+    private static final int FILE_BYTES = POSITIONS / 8;
+
+    // Generator states
+    private static final byte UNRESOLVED = 0;
+    private static final byte INVALID = 1;
+    private static final byte DRAWN = 2;
+    private static final byte WON = 3;
+
+    // Indexed by Rank ordinal
+    private final MappedByteBuffer[] tables = new MappedByteBuffer[6];
+
+    private Bitbases() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "bitbases");
+        long start = System.nanoTime();
+        generate(dir);
+        System.out.println("Generated bitbases in " + dir.toAbsolutePath() + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // Maps the tables in dir, generating any that are missing first
+    public static Bitbases openOrGenerate(Path dir) throws IOException {
+        for (String name : FILE_NAMES) {
+            if (!Files.exists(dir.resolve(name))) {
+                generate(dir);
+                break;
+            }
+        }
+        return open(dir);
+    }
+
+    public static Bitbases open(Path dir) throws IOException {
+        Bitbases bitbases = new Bitbases();
+        for (int i = 0; i < ENDINGS.length; i++) {
+            Path file = dir.resolve(FILE_NAMES[i]);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() != FILE_BYTES) {
+                    throw new IOException("Corrupt bitbase, expected " + FILE_BYTES + " bytes: " + file);
+                }
+                bitbases.tables[ENDINGS[i].ordinal()] = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_BYTES);
+            }
+        }
+        return bitbases;
+    }
+
+    public static void generate(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        byte[] queen = solve(Rank.QUEEN, null, null);
+        byte[] rook = solve(Rank.ROOK, null, null);
+        byte[] pawn = solve(Rank.PAWN, queen, rook);
+        byte[][] results = {queen, rook, pawn};
+        for (int i = 0; i < ENDINGS.length; i++) {
+            Path file = dir.resolve(FILE_NAMES[i]);
+            Path temp = dir.resolve(FILE_NAMES[i] + ".tmp");
+            Files.write(temp, pack(results[i]));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // WIN, DRAW or LOSS for the side to move, or UNKNOWN when the material is not covered
+    public int probe(ChessModel model) {
+        int pieceCount = 0;
+        int extra = Bitboards.EMPTY;
+        for (int piece = 0; piece < Bitboards.PIECE_TYPES; piece++) {
+            long pieces = model.bitboard(piece);
+            pieceCount += Long.bitCount(pieces);
+            if (pieces != 0 && Bitboards.rankOf(piece) != Rank.KING) {
+                extra = piece;
+            }
+        }
+        if (pieceCount == 2) {
+            return DRAW;
+        }
+        if (pieceCount != 3) {
+            return UNKNOWN;
+        }
+
+        Rank rank = Bitboards.rankOf(extra);
+        if (rank == Rank.BISHOP || rank == Rank.KNIGHT) {
+            return DRAW;
+        }
+        MappedByteBuffer table = tables[rank.ordinal()];
+        if (table == null) {
+            return UNKNOWN;
+        }
+
+        Player strong = Bitboards.playerOf(extra);
+        int flip = strong == Player.WHITE ? 0 : 56;
+        int strongKing = Long.numberOfTrailingZeros(model.bitboard(Bitboards.pieceIndex(strong, Rank.KING))) ^ flip;
+        int weakKing = Long.numberOfTrailingZeros(
+                model.bitboard(Bitboards.pieceIndex(strong.opposite(), Rank.KING))) ^ flip;
+        int square = Long.numberOfTrailingZeros(model.bitboard(extra)) ^ flip;
+        boolean strongToMove = model.getPlayerInTurn() == strong;
+
+        int index = index(strongToMove ? 0 : 1, strongKing, weakKing, square);
+        if ((table.get(index >>> 3) & (1 << (index & 7))) == 0) {
+            return DRAW;
+        }
+        return strongToMove ? WIN : LOSS;
+    }
+
+    private static int index(int sideToMove, int strongKing, int weakKing, int square) {
+        return sideToMove << 18 | strongKing << 12 | weakKing << 6 | square;
+    }
+
+    // Repeats one backward pass over all positions until nothing changes;
+    // whatever is still unresolved then is a draw
+    private static byte[] solve(Rank piece, byte[] queen, byte[] rook) {
+        byte[] results = new byte[POSITIONS];
+        for (int index = 0; index < POSITIONS; index++) {
+            if (!isValid(piece, index)) {
+                results[index] = INVALID;
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int index = 0; index < POSITIONS; index++) {
+                if (results[index] != UNRESOLVED) {
+                    continue;
+                }
+                byte result = (index >>> 18) == 0
+                        ? resolveStrongToMove(piece, index, results, queen, rook)
+                        : resolveWeakToMove(piece, index, results);
+                if (result != UNRESOLVED) {
+                    results[index] = result;
+                    changed = true;
+                }
+            }
+        }
+
+        for (int index = 0; index < POSITIONS; index++) {
+            if (results[index] == UNRESOLVED) {
+                results[index] = DRAWN;
+            }
+        }
+        return results;
+    }
+
+    private static boolean isValid(Rank piece, int index) {
+        int sideToMove = index >>> 18;
+        int strongKing = (index >>> 12) & 63;
+        int weakKing = (index >>> 6) & 63;
+        int square = index & 63;
+        if (strongKing == weakKing || square == strongKing || square == weakKing) {
+            return false;
+        }
+        if ((Attacks.king(strongKing) & Bitboards.bit(weakKing)) != 0) {
+            return false;
+        }
+        if (piece == Rank.PAWN && (Bitboards.row(square) == 0 || Bitboards.row(square) == 7)) {
+            return false;
+        }
+        // The weak king cannot be in check with the strong side to move
+        long occupied = Bitboards.bit(strongKing) | Bitboards.bit(weakKing);
+        return sideToMove == 1 || (attacks(piece, square, occupied) & Bitboards.bit(weakKing)) == 0;
+    }
+
+    private static byte resolveStrongToMove(Rank piece, int index, byte[] results, byte[] queen, byte[] rook) {
+        int strongKing = (index >>> 12) & 63;
+        int weakKing = (index >>> 6) & 63;
+        int square = index & 63;
+        boolean unresolved = false;
+
+        long kingMoves = Attacks.king(strongKing) & ~Attacks.king(weakKing) & ~Bitboards.bit(square);
+        for (; kingMoves != 0; kingMoves &= kingMoves - 1) {
+            byte child = results[index(1, Long.numberOfTrailingZeros(kingMoves), weakKing, square)];
+            if (child == WON) {
+                return WON;
+            }
+            unresolved |= child == UNRESOLVED;
+        }
+
+        if (piece == Rank.PAWN) {
+            long blockers = Bitboards.bit(strongKing) | Bitboards.bit(weakKing);
+            int push = square + 8;
+            if ((blockers & Bitboards.bit(push)) == 0) {
+                if (Bitboards.row(push) == 7) {
+                    // Promote to a queen or, where that stalemates, a rook
+                    int promoted = index(1, strongKing, weakKing, push);
+                    if (queen[promoted] == WON || rook[promoted] == WON) {
+                        return WON;
+                    }
+                } else {
+                    byte child = results[index(1, strongKing, weakKing, push)];
+                    if (child == WON) {
+                        return WON;
+                    }
+                    unresolved |= child == UNRESOLVED;
+
+                    int doublePush = push + 8;
+                    if (Bitboards.row(square) == 1 && (blockers & Bitboards.bit(doublePush)) == 0) {
+                        child = results[index(1, strongKing, weakKing, doublePush)];
+                        if (child == WON) {
+                            return WON;
+                        }
+                        unresolved |= child == UNRESOLVED;
+                    }
+                }
+            }
+        } else {
+            long occupied = Bitboards.bit(strongKing) | Bitboards.bit(weakKing);
+            long pieceMoves = attacks(piece, square, occupied) & ~occupied;
+            for (; pieceMoves != 0; pieceMoves &= pieceMoves - 1) {
+                byte child = results[index(1, strongKing, weakKing, Long.numberOfTrailingZeros(pieceMoves))];
+                if (child == WON) {
+                    return WON;
+                }
+                unresolved |= child == UNRESOLVED;
+            }
+        }
+        return unresolved ? UNRESOLVED : DRAWN;
+    }
+
+    private static byte resolveWeakToMove(Rank piece, int index, byte[] results) {
+        int strongKing = (index >>> 12) & 63;
+        int weakKing = (index >>> 6) & 63;
+        int square = index & 63;
+
+        // Sliders attack through the weak king's current square
+        long guarded = Attacks.king(strongKing) | attacks(piece, square, Bitboards.bit(strongKing));
+        boolean inCheck = (attacks(piece, square, Bitboards.bit(strongKing) | Bitboards.bit(weakKing))
+                & Bitboards.bit(weakKing)) != 0;
+        boolean unresolved = false;
+        boolean hasMove = false;
+
+        long kingMoves = Attacks.king(weakKing) & ~guarded;
+        for (; kingMoves != 0; kingMoves &= kingMoves - 1) {
+            int to = Long.numberOfTrailingZeros(kingMoves);
+            hasMove = true;
+            if (to == square) {
+                // Capturing the last piece leaves a bare king draw
+                return DRAWN;
+            }
+            byte child = results[index(0, strongKing, to, square)];
+            if (child == DRAWN) {
+                return DRAWN;
+            }
+            unresolved |= child == UNRESOLVED;
+        }
+
+        if (!hasMove) {
+            return inCheck ? WON : DRAWN;
+        }
+        return unresolved ? UNRESOLVED : WON;
+    }
+
+    private static long attacks(Rank piece, int square, long occupied) {
+        switch (piece) {
+            case QUEEN:
+                return Attacks.queen(square, occupied);
+            case ROOK:
+                return Attacks.rook(square, occupied);
+            default:
+                return Attacks.pawn(Player.WHITE, square);
+        }
+    }
+
+    private static byte[] pack(byte[] results) {
+        byte[] bits = new byte[FILE_BYTES];
+        for (int index = 0; index < POSITIONS; index++) {
+            if (results[index] == WON) {
+                bits[index >>> 3] |= (byte) (1 << (index & 7));
+            }
+        }
+        return bits;
+    }
+}
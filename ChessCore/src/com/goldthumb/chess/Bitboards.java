@@ -0,0 +1,44 @@
+package com.goldthumb.chess;
+
+public final class Bitboards {
+    static final int EMPTY = -1;
+    static final int NO_SQUARE = -1;
+    static final int PIECE_TYPES = 12;
+
+    private static final Rank[] RANKS = Rank.values();
+
+    private Bitboards() {
+    }
+
+    public static int square(int col, int row) {
+        return row * 8 + col;
+    }
+
+    public static int col(int square) {
+        return square & 7;
+    }
+
+    public static int row(int square) {
+        return square >>> 3;
+    }
+
+    static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static boolean onBoard(int col, int row) {
+        return col >= 0 && col < 8 && row >= 0 && row < 8;
+    }
+
+    static int pieceIndex(Player player, Rank rank) {
+        return player.ordinal() * 6 + rank.ordinal();
+    }
+
+    static Player playerOf(int piece) {
+        return piece < 6 ? Player.WHITE : Player.BLACK;
+    }
+
+    static Rank rankOf(int piece) {
+        return RANKS[piece % 6];
+    }
+}
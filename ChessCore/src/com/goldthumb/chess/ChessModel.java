@@ -0,0 +1,1025 @@
+package com.goldthumb.chess;
+
+import static com.goldthumb.chess.Bitboards.EMPTY;
+import static com.goldthumb.chess.Bitboards.NO_SQUARE;
+import static com.goldthumb.chess.Bitboards.bit;
+import static com.goldthumb.chess.Bitboards.col;
+import static com.goldthumb.chess.Bitboards.onBoard;
+import static com.goldthumb.chess.Bitboards.pieceIndex;
+import static com.goldthumb.chess.Bitboards.playerOf;
+import static com.goldthumb.chess.Bitboards.rankOf;
+import static com.goldthumb.chess.Bitboards.row;
+import static com.goldthumb.chess.Bitboards.square;
+import static com.goldthumb.chess.Text.isSpace;
+import static com.goldthumb.chess.Text.parseNumber;
+import static com.goldthumb.chess.Text.skipDigits;
+import static com.goldthumb.chess.Text.skipSpaces;
+
+import java.util.Arrays;
+
+public class ChessModel {
+    public static final int MAX_MOVES = 256;
+
+    private static final int WHITE_KINGSIDE = 1;
+    private static final int WHITE_QUEENSIDE = 2;
+    private static final int BLACK_KINGSIDE = 4;
+    private static final int BLACK_QUEENSIDE = 8;
+    private static final int ALL_CASTLING = 15;
+
+    // Castling rights that survive a move touching the square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    // Starting squares per piece index: white K Q B R N P, then black
+    private static final long[] INITIAL_BITBOARDS = {
+        0x0000000000000010L, 0x0000000000000008L, 0x0000000000000024L,
+        0x0000000000000081L, 0x0000000000000042L, 0x000000000000FF00L,
+        0x1000000000000000L, 0x0800000000000000L, 0x2400000000000000L,
+        0x8100000000000000L, 0x4200000000000000L, 0x00FF000000000000L,
+    };
+
+    private static final String[] IMAGE_NAMES = {
+        ChessConstants.wKing, ChessConstants.wQueen, ChessConstants.wBishop,
+        ChessConstants.wRook, ChessConstants.wKnight, ChessConstants.wPawn,
+        ChessConstants.bKing, ChessConstants.bQueen, ChessConstants.bBishop,
+        ChessConstants.bRook, ChessConstants.bKnight, ChessConstants.bPawn,
+    };
+
+    private static final String PIECE_CHARS = "kqbrnpKQBRNP";
+    private static final String FEN_CHARS = "KQBRNPkqbrnp";
+
+    private static final int UNDO_CAPACITY = 256;
+
+    private static final long BACK_RANKS = 0xFF000000000000FFL;
+
+    private static final Rank[] PROMOTIONS = {Rank.QUEEN, Rank.ROOK, Rank.BISHOP, Rank.KNIGHT};
+
+    static {
+        Arrays.fill(CASTLING_MASK, ALL_CASTLING);
+        CASTLING_MASK[square(4, 0)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[square(7, 0)] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[square(0, 0)] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[square(4, 7)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[square(7, 7)] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[square(0, 7)] &= ~BLACK_QUEENSIDE;
+    }
+
+    private final long[] bitboards = new long[Bitboards.PIECE_TYPES];
+    private final long[] occupancy = new long[2];
+    private long occupied;
+    private final int[] squares = new int[64];
+    private final ChessPiece[] pieceViews = new ChessPiece[64];
+    private Player playerInTurn = Player.WHITE;
+    private int castlingRights;
+    private int enPassantSquare = NO_SQUARE;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    private long key;
+    private final Evaluation evaluation = new Evaluation();
+
+    // Undo stack: one entry per move made since reset()
+    private int[] undoMoves = new int[UNDO_CAPACITY];
+    private int[] undoCaptured = new int[UNDO_CAPACITY];
+    private int[] undoCastling = new int[UNDO_CAPACITY];
+    private int[] undoEnPassant = new int[UNDO_CAPACITY];
+    private int[] undoHalfmove = new int[UNDO_CAPACITY];
+    private long[] undoKeys = new long[UNDO_CAPACITY];
+    private int ply;
+    // FEN of the position at ply 0, or null for the standard starting position
+    private String startFen;
+
+    private final int[] scratchMoves = new int[MAX_MOVES];
+
+    // Latest Position for readers on other threads. Off by default so that search
+    // copies, which make millions of moves, do not allocate one per move.
+    private boolean publishing;
+    private volatile Position position;
+
+    public ChessModel() {
+        Arrays.fill(squares, EMPTY);
+    }
+
+    public ChessModel(ChessModel other) {
+        System.arraycopy(other.bitboards, 0, bitboards, 0, bitboards.length);
+        System.arraycopy(other.occupancy, 0, occupancy, 0, occupancy.length);
+        occupied = other.occupied;
+        System.arraycopy(other.squares, 0, squares, 0, squares.length);
+        playerInTurn = other.playerInTurn;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        key = other.key;
+        evaluation.copyFrom(other.evaluation);
+
+        undoMoves = other.undoMoves.clone();
+        undoCaptured = other.undoCaptured.clone();
+        undoCastling = other.undoCastling.clone();
+        undoEnPassant = other.undoEnPassant.clone();
+        undoHalfmove = other.undoHalfmove.clone();
+        undoKeys = other.undoKeys.clone();
+        ply = other.ply;
+        startFen = other.startFen;
+    }
+
+    // Starts from a published position. The moves before it are not known, so
+    // repetitions are only counted from here on.
+    public ChessModel(Position position) {
+        Arrays.fill(squares, EMPTY);
+        for (int piece = 0; piece < Bitboards.PIECE_TYPES; piece++) {
+            for (long pieces = position.bitboard(piece); pieces != 0; pieces &= pieces - 1) {
+                putPiece(Long.numberOfTrailingZeros(pieces), piece);
+            }
+        }
+        playerInTurn = position.getPlayerInTurn();
+        castlingRights = position.getCastlingRights();
+        enPassantSquare = position.getEnPassantSquare();
+        halfmoveClock = position.getHalfmoveClock();
+        fullmoveNumber = position.getFullmoveNumber();
+        key = position.positionKey();
+        startFen = toFen();
+    }
+
+    // Publishes a Position after every reset, loadFen, movePiece and playMove from now on;
+    // getPosition() is null until then. makeMove and unmakeMove do not publish, so the
+    // trial moves of legality checks and search never show.
+    public void setPublishing(boolean publishing) {
+        this.publishing = publishing;
+        position = publishing ? snapshot() : null;
+    }
+
+    // Safe to call from any thread
+    public Position getPosition() {
+        return position;
+    }
+
+    private void publish() {
+        if (publishing) {
+            position = snapshot();
+        }
+    }
+
+    private Position snapshot() {
+        ChessPiece[] pieces = new ChessPiece[64];
+        for (long occupiedSquares = occupied; occupiedSquares != 0; occupiedSquares &= occupiedSquares - 1) {
+            int square = Long.numberOfTrailingZeros(occupiedSquares);
+            pieces[square] = pieceAt(col(square), row(square));
+        }
+        return new Position(bitboards.clone(), pieces, playerInTurn, castlingRights, enPassantSquare,
+                halfmoveClock, fullmoveNumber, ply, ply == 0 ? Move.NONE : undoMoves[ply - 1], key);
+    }
+
+    public void reset() {
+        clear();
+
+        for (int piece = 0; piece < Bitboards.PIECE_TYPES; piece++) {
+            for (long pieces = INITIAL_BITBOARDS[piece]; pieces != 0; pieces &= pieces - 1) {
+                putPiece(Long.numberOfTrailingZeros(pieces), piece);
+            }
+        }
+        
+        playerInTurn = Player.WHITE;
+        castlingRights = ALL_CASTLING;
+        enPassantSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        ply = 0;
+        startFen = null;
+        key = computeKey();
+        publish();
+    }
+
+    // Reads the board, side to move, castling, en passant and, if present, the two move
+    // counters. Anything after them, such as EPD operations, is ignored. The FEN is
+    // checked completely before the model changes, so an invalid one leaves it as it was.
+    public void loadFen(CharSequence fen) {
+        long[] board = new long[Bitboards.PIECE_TYPES];
+        long all = 0L;
+        int length = fen.length();
+        int i = skipSpaces(fen, 0);
+
+        int col = 0;
+        int row = 7;
+        for (; i < length && !isSpace(fen.charAt(i)); i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (col != 8 || row == 0) {
+                    throw invalidFen(fen);
+                }
+                row--;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+                if (col > 8) {
+                    throw invalidFen(fen);
+                }
+            } else {
+                int piece = FEN_CHARS.indexOf(c);
+                if (piece < 0 || !onBoard(col, row)) {
+                    throw invalidFen(fen);
+                }
+                board[piece] |= bit(square(col, row));
+                all |= bit(square(col, row));
+                col++;
+            }
+        }
+        // Move generation assumes pawns never stand on the first or last rank
+        long allPawns = board[pieceIndex(Player.WHITE, Rank.PAWN)] | board[pieceIndex(Player.BLACK, Rank.PAWN)];
+        if (row != 0 || col != 8
+                || Long.bitCount(board[pieceIndex(Player.WHITE, Rank.KING)]) != 1
+                || Long.bitCount(board[pieceIndex(Player.BLACK, Rank.KING)]) != 1
+                || (allPawns & BACK_RANKS) != 0) {
+            throw invalidFen(fen);
+        }
+
+        i = skipSpaces(fen, i);
+        Player player = Player.WHITE;
+        if (i < length) {
+            char side = fen.charAt(i++);
+            if (side == 'b') {
+                player = Player.BLACK;
+            } else if (side != 'w') {
+                throw invalidFen(fen);
+            }
+        }
+        // The side that just moved cannot have left its king in check
+        long opponentKing = board[pieceIndex(player.opposite(), Rank.KING)];
+        if (isSquareAttacked(board, all, Long.numberOfTrailingZeros(opponentKing), player)) {
+            throw invalidFen(fen);
+        }
+
+        i = skipSpaces(fen, i);
+        int castling = 0;
+        for (; i < length && !isSpace(fen.charAt(i)); i++) {
+            switch (fen.charAt(i)) {
+                case 'K': castling |= WHITE_KINGSIDE; break;
+                case 'Q': castling |= WHITE_QUEENSIDE; break;
+                case 'k': castling |= BLACK_KINGSIDE; break;
+                case 'q': castling |= BLACK_QUEENSIDE; break;
+                case '-': break;
+                default: throw invalidFen(fen);
+            }
+        }
+
+        // The square must be one a pawn of the opponent has just passed with a double step
+        i = skipSpaces(fen, i);
+        int passed = NO_SQUARE;
+        if (i < length && fen.charAt(i) != '-') {
+            char file = fen.charAt(i);
+            if (i + 1 >= length || file < 'a' || file > 'h'
+                    || fen.charAt(i + 1) != (player == Player.WHITE ? '6' : '3')) {
+                throw invalidFen(fen);
+            }
+            passed = square(file - 'a', player == Player.WHITE ? 5 : 2);
+            int forward = player == Player.WHITE ? 8 : -8;
+            if ((all & (bit(passed) | bit(passed + forward))) != 0
+                    || (board[pieceIndex(player.opposite(), Rank.PAWN)] & bit(passed - forward)) == 0) {
+                throw invalidFen(fen);
+            }
+            // Kept only when a pawn can actually capture there, as after a move
+            if ((Attacks.pawn(player.opposite(), passed) & board[pieceIndex(player, Rank.PAWN)]) == 0) {
+                passed = NO_SQUARE;
+            }
+        }
+        for (; i < length && !isSpace(fen.charAt(i)); i++) {
+        }
+
+        // Optional counters; EPD lines carry operations here instead
+        int halfmoves = 0;
+        int fullmoves = 1;
+        i = skipSpaces(fen, i);
+        int end = skipDigits(fen, i);
+        if (end > i) {
+            halfmoves = (int) parseNumber(fen, i, end, Integer.MAX_VALUE);
+            i = skipSpaces(fen, end);
+            end = skipDigits(fen, i);
+            if (end > i) {
+                fullmoves = (int) Math.max(1, parseNumber(fen, i, end, Integer.MAX_VALUE));
+            }
+        }
+
+        clear();
+        for (int piece = 0; piece < Bitboards.PIECE_TYPES; piece++) {
+            for (long pieces = board[piece]; pieces != 0; pieces &= pieces - 1) {
+                putPiece(Long.numberOfTrailingZeros(pieces), piece);
+            }
+        }
+        playerInTurn = player;
+        castlingRights = castling & castlingRightsInPlace();
+        enPassantSquare = passed;
+        halfmoveClock = halfmoves;
+        fullmoveNumber = fullmoves;
+        ply = 0;
+        key = computeKey();
+        startFen = toFen();
+        publish();
+    }
+
+    // Where the moves returned by moveAt start from; null after reset()
+    public String getStartFen() {
+        return startFen;
+    }
+
+    private static IllegalArgumentException invalidFen(CharSequence fen) {
+        return new IllegalArgumentException("Invalid FEN: " + fen);
+    }
+
+    public String toFen() {
+        return appendFen(new StringBuilder(90)).toString();
+    }
+
+    // The en passant square is written only when a pawn can actually capture there
+    public StringBuilder appendFen(StringBuilder fen) {
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int piece = squares[square(col, row)];
+                if (piece == EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                fen.append(FEN_CHARS.charAt(piece));
+            }
+            if (empty > 0) {
+                fen.append((char) ('0' + empty));
+            }
+            if (row > 0) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(playerInTurn == Player.WHITE ? " w " : " b ");
+        if (castlingRights == 0) {
+            fen.append('-');
+        } else {
+            if ((castlingRights & WHITE_KINGSIDE) != 0) fen.append('K');
+            if ((castlingRights & WHITE_QUEENSIDE) != 0) fen.append('Q');
+            if ((castlingRights & BLACK_KINGSIDE) != 0) fen.append('k');
+            if ((castlingRights & BLACK_QUEENSIDE) != 0) fen.append('q');
+        }
+        fen.append(' ');
+        if (enPassantSquare == NO_SQUARE) {
+            fen.append('-');
+        } else {
+            fen.append((char) ('a' + col(enPassantSquare))).append((char) ('1' + row(enPassantSquare)));
+        }
+        return fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+    }
+
+    // Rights whose king and rook still stand on their original squares
+    private int castlingRightsInPlace() {
+        int rights = 0;
+        for (Player player : Player.values()) {
+            int homeRow = player == Player.WHITE ? 0 : 7;
+            if ((bitboards[pieceIndex(player, Rank.KING)] & bit(square(4, homeRow))) == 0) {
+                continue;
+            }
+            long rooks = bitboards[pieceIndex(player, Rank.ROOK)];
+            if ((rooks & bit(square(7, homeRow))) != 0) {
+                rights |= player == Player.WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+            }
+            if ((rooks & bit(square(0, homeRow))) != 0) {
+                rights |= player == Player.WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+            }
+        }
+        return rights;
+    }
+
+    private void clear() {
+        Arrays.fill(bitboards, 0L);
+        Arrays.fill(occupancy, 0L);
+        occupied = 0L;
+        Arrays.fill(squares, EMPTY);
+        Arrays.fill(pieceViews, null);
+        key = 0L;
+        evaluation.clear();
+    }
+
+    private void putPiece(int square, int piece) {
+        long b = bit(square);
+        bitboards[piece] |= b;
+        occupancy[piece / 6] |= b;
+        occupied |= b;
+        squares[square] = piece;
+        pieceViews[square] = null;
+        key ^= Zobrist.piece(piece, square);
+        evaluation.add(piece, square);
+    }
+
+    private int removePiece(int square) {
+        int piece = squares[square];
+        long b = ~bit(square);
+        bitboards[piece] &= b;
+        occupancy[piece / 6] &= b;
+        occupied &= b;
+        squares[square] = EMPTY;
+        pieceViews[square] = null;
+        key ^= Zobrist.piece(piece, square);
+        evaluation.remove(piece, square);
+        return piece;
+    }
+
+    private void relocatePiece(int from, int to) {
+        putPiece(to, removePiece(from));
+    }
+    
+    // Plays the move if it is legal; a pawn reaching the last row becomes a queen
+    public void movePiece(int fromCol, int fromRow, int toCol, int toRow) {
+        movePiece(fromCol, fromRow, toCol, toRow, Rank.QUEEN);
+    }
+
+    // Plays the move if it is legal; promotion is the piece a pawn reaching the last row becomes
+    public void movePiece(int fromCol, int fromRow, int toCol, int toRow, Rank promotion) {
+        if (promotion == Rank.KING || promotion == Rank.PAWN) {
+            throw new IllegalArgumentException("A pawn cannot promote to a " + promotion);
+        }
+        if (!onBoard(fromCol, fromRow) || !onBoard(toCol, toRow)) return;
+        int from = square(fromCol, fromRow);
+        int to = square(toCol, toRow);
+        int movingPiece = squares[from];
+        if (movingPiece == EMPTY || playerOf(movingPiece) != playerInTurn) return;
+        if (!isValidMove(fromCol, fromRow, toCol, toRow)) return;
+        if (!leavesKingSafe(from, to)) return;
+
+        // Only pawns promote
+        if (rankOf(movingPiece) == Rank.PAWN && (toRow == 0 || toRow == 7)) {
+            playMove(Move.of(from, to, promotion));
+        } else {
+            playMove(Move.of(from, to));
+        }
+    }
+
+    // Makes a move of the game, as opposed to a trial move, and publishes the new position
+    public void playMove(int move) {
+        makeMove(move);
+        publish();
+    }
+
+    // Applies a pseudo-legal move; undo it with unmakeMove()
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int movingPiece = squares[from];
+        Rank rank = rankOf(movingPiece);
+
+        if (ply == undoMoves.length) {
+            growUndoStack();
+        }
+        undoMoves[ply] = move;
+        undoCastling[ply] = castlingRights;
+        undoEnPassant[ply] = enPassantSquare;
+        undoHalfmove[ply] = halfmoveClock;
+        undoKeys[ply] = key;
+
+        int captured = EMPTY;
+        if (rank == Rank.PAWN && to == enPassantSquare) {
+            // En passant: the captured pawn is beside the from square, not on to
+            captured = removePiece(square(col(to), row(from)));
+        } else if (squares[to] != EMPTY) {
+            captured = removePiece(to);
+        }
+        undoCaptured[ply] = captured;
+        ply++;
+
+        removePiece(from);
+        putPiece(to, Move.isPromotion(move) ? pieceIndex(playerInTurn, Move.promotion(move)) : movingPiece);
+
+        // Castling: the king has moved two squares, now move the rook
+        if (rank == Rank.KING && Math.abs(col(to) - col(from)) == 2) {
+            int rookRow = row(from);
+            if (col(to) > col(from)) {
+                relocatePiece(square(7, rookRow), square(5, rookRow));
+            } else {
+                relocatePiece(square(0, rookRow), square(3, rookRow));
+            }
+        }
+
+        // Mark the en passant square, only when an enemy pawn can capture there
+        key ^= Zobrist.enPassant(enPassantSquare);
+        enPassantSquare = NO_SQUARE;
+        if (rank == Rank.PAWN && Math.abs(to - from) == 16) {
+            int passed = (from + to) / 2;
+            long enemyPawns = bitboards[pieceIndex(playerInTurn.opposite(), Rank.PAWN)];
+            if ((Attacks.pawn(playerInTurn, passed) & enemyPawns) != 0) {
+                enPassantSquare = passed;
+                key ^= Zobrist.enPassant(passed);
+            }
+        }
+
+        halfmoveClock = rank == Rank.PAWN || captured != EMPTY ? 0 : halfmoveClock + 1;
+        if (playerInTurn == Player.BLACK) {
+            fullmoveNumber++;
+        }
+
+        key ^= Zobrist.castling(castlingRights);
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        key ^= Zobrist.castling(castlingRights);
+        switchPlayer();
+    }
+
+    public void unmakeMove() {
+        ply--;
+        int move = undoMoves[ply];
+        int from = Move.from(move);
+        int to = Move.to(move);
+
+        switchPlayer();
+        if (playerInTurn == Player.BLACK) {
+            fullmoveNumber--;
+        }
+        castlingRights = undoCastling[ply];
+        enPassantSquare = undoEnPassant[ply];
+        halfmoveClock = undoHalfmove[ply];
+
+        int movingPiece = removePiece(to);
+        if (Move.isPromotion(move)) {
+            movingPiece = pieceIndex(playerInTurn, Rank.PAWN);
+        }
+        putPiece(from, movingPiece);
+        Rank rank = rankOf(movingPiece);
+
+        if (rank == Rank.KING && Math.abs(col(to) - col(from)) == 2) {
+            int rookRow = row(from);
+            if (col(to) > col(from)) {
+                relocatePiece(square(5, rookRow), square(7, rookRow));
+            } else {
+                relocatePiece(square(3, rookRow), square(0, rookRow));
+            }
+        }
+
+        int captured = undoCaptured[ply];
+        if (captured != EMPTY) {
+            if (rank == Rank.PAWN && to == enPassantSquare) {
+                putPiece(square(col(to), row(from)), captured);
+            } else {
+                putPiece(to, captured);
+            }
+        }
+        key = undoKeys[ply];
+    }
+
+    private void growUndoStack() {
+        int capacity = undoMoves.length * 2;
+        undoMoves = Arrays.copyOf(undoMoves, capacity);
+        undoCaptured = Arrays.copyOf(undoCaptured, capacity);
+        undoCastling = Arrays.copyOf(undoCastling, capacity);
+        undoEnPassant = Arrays.copyOf(undoEnPassant, capacity);
+        undoHalfmove = Arrays.copyOf(undoHalfmove, capacity);
+        undoKeys = Arrays.copyOf(undoKeys, capacity);
+    }
+    
+    private void switchPlayer() {
+        playerInTurn = playerInTurn.opposite();
+        key ^= Zobrist.whiteToMove();
+    }
+
+    // 64-bit Zobrist key of the position, updated incrementally by every move
+    public long positionKey() {
+        return key;
+    }
+
+    // Static evaluation in centipawns from the side to move's point of view
+    public int evaluate() {
+        int score = evaluation.score();
+        return playerInTurn == Player.WHITE ? score : -score;
+    }
+
+    public Player getPlayerInTurn() {
+        return playerInTurn;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    // Number of moves made since reset() or loadFen()
+    public int getPly() {
+        return ply;
+    }
+
+    // The index-th move made since reset() or loadFen()
+    public int moveAt(int index) {
+        if (index < 0 || index >= ply) {
+            throw new IndexOutOfBoundsException("No move " + index + " in " + ply + " plies");
+        }
+        return undoMoves[index];
+    }
+
+    // Position key after the first plies moves, for 0 <= plies <= getPly()
+    public long keyAt(int plies) {
+        if (plies < 0 || plies > ply) {
+            throw new IndexOutOfBoundsException("No position after " + plies + " of " + ply + " plies");
+        }
+        return plies == ply ? key : undoKeys[plies];
+    }
+
+    long bitboard(int piece) {
+        return bitboards[piece];
+    }
+
+    int pieceIndexAt(int square) {
+        return squares[square];
+    }
+
+    boolean isCapture(int move) {
+        int to = Move.to(move);
+        return squares[to] != EMPTY
+                || (to == enPassantSquare && rankOf(squares[Move.from(move)]) == Rank.PAWN);
+    }
+
+    private long computeKey() {
+        long k = Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        if (playerInTurn == Player.WHITE) {
+            k ^= Zobrist.whiteToMove();
+        }
+        for (long pieces = occupied; pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            k ^= Zobrist.piece(squares[square], square);
+        }
+        return k;
+    }
+
+    // How many times the current position has occurred since the last capture or pawn move
+    public int repetitionCount() {
+        int count = 1;
+        int oldest = Math.max(0, ply - halfmoveClock);
+        for (int i = ply - 2; i >= oldest; i -= 2) {
+            if (undoKeys[i] == key) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean isThreefoldRepetition() {
+        return repetitionCount() >= 3;
+    }
+
+    public ChessPiece pieceAt(int col, int row) {
+        if (!onBoard(col, row)) {
+            return null;
+        }
+        int square = square(col, row);
+        int piece = squares[square];
+        if (piece == EMPTY) {
+            return null;
+        }
+        ChessPiece view = pieceViews[square];
+        if (view == null) {
+            view = new ChessPiece(col, row, playerOf(piece), rankOf(piece), IMAGE_NAMES[piece],
+                    hasMoved(square, piece));
+            pieceViews[square] = view;
+        }
+        return view;
+    }
+
+    private boolean hasMoved(int square, int piece) {
+        switch (rankOf(piece)) {
+            case KING:
+            case ROOK:
+                return (castlingRights & ~CASTLING_MASK[square]) == 0;
+            default:
+                return (INITIAL_BITBOARDS[piece] & bit(square)) == 0;
+        }
+    }
+
+    private boolean isEmpty(int col, int row) {
+        return squares[square(col, row)] == EMPTY;
+    }
+
+    public boolean isValidMove(int fromCol, int fromRow, int toCol, int toRow) {
+        if (!onBoard(fromCol, fromRow) || !onBoard(toCol, toRow)) {
+            return false;
+        }
+
+        int piece = squares[square(fromCol, fromRow)];
+        if (piece == EMPTY || (fromCol == toCol && fromRow == toRow)) {
+            return false;
+        }
+
+        if (playerOf(piece) != playerInTurn) {
+            return false;
+        }
+
+        int target = squares[square(toCol, toRow)];
+        if (target != EMPTY && playerOf(target) == playerOf(piece)) {
+            return false;
+        }
+
+        int from = square(fromCol, fromRow);
+        long to = bit(square(toCol, toRow));
+        switch (rankOf(piece)) {
+            case PAWN:
+                return isValidPawnMove(playerOf(piece), fromCol, fromRow, toCol, toRow, target);
+            case KNIGHT:
+                return (Attacks.knight(from) & to) != 0;
+            case BISHOP:
+                return (Attacks.bishop(from, occupied) & to) != 0;
+            case ROOK:
+                return (Attacks.rook(from, occupied) & to) != 0;
+            case QUEEN:
+                return (Attacks.queen(from, occupied) & to) != 0;
+            case KING:
+                return isValidKingMove(fromCol, fromRow, toCol, toRow);
+            default:
+                return false;
+        }
+    }
+
+    private boolean isValidPawnMove(Player player, int fromCol, int fromRow, int toCol, int toRow, int target) {
+        int direction = player == Player.WHITE ? 1 : -1;
+        int startRow = player == Player.WHITE ? 1 : 6;
+        
+        if (fromCol == toCol) {
+            if (toRow == fromRow + direction && target == EMPTY) {
+                return true;
+            }
+            if (fromRow == startRow && toRow == fromRow + 2 * direction && 
+                target == EMPTY && isEmpty(fromCol, fromRow + direction)) {
+                return true;
+            }
+        }
+        else if (Math.abs(toCol - fromCol) == 1 && toRow == fromRow + direction) {
+            if (target != EMPTY) {
+                return true;
+            }
+            if (square(toCol, toRow) == enPassantSquare) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
+    private boolean isValidKingMove(int fromCol, int fromRow, int toCol, int toRow) {
+        int dx = Math.abs(toCol - fromCol);
+        int dy = Math.abs(toRow - fromRow);
+        if (dx <= 1 && dy <= 1) {
+            return true;
+        }
+        
+        if (fromRow == toRow && dx == 2 && dy == 0) {
+            return isValidCastling(fromCol, fromRow, toCol, toRow);
+        }
+        
+        return false;
+    }
+
+    private boolean isValidCastling(int fromCol, int fromRow, int toCol, int toRow) {
+        Player player = playerOf(squares[square(fromCol, fromRow)]);
+        int right;
+        if (player == Player.WHITE) {
+            right = toCol > fromCol ? WHITE_KINGSIDE : WHITE_QUEENSIDE;
+        } else {
+            right = toCol > fromCol ? BLACK_KINGSIDE : BLACK_QUEENSIDE;
+        }
+        if ((castlingRights & right) == 0) {
+            return false;
+        }
+        
+        int rookCol = toCol > fromCol ? 7 : 0;
+        int step = toCol > fromCol ? 1 : -1;
+        for (int col = fromCol + step; col != rookCol; col += step) {
+            if (!isEmpty(col, fromRow)) {
+                return false;
+            }
+        }
+        
+        for (int col = fromCol; col != toCol + step; col += step) {
+            if (isSquareAttacked(square(col, fromRow), player.opposite())) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+
+    public boolean isKingInCheck(Player kingPlayer) {
+        long king = bitboards[pieceIndex(kingPlayer, Rank.KING)];
+        if (king == 0) return false;
+
+        return isSquareAttacked(Long.numberOfTrailingZeros(king), kingPlayer.opposite());
+    }
+
+    public boolean isMoveValidToEscapeCheck(int fromCol, int fromRow, int toCol, int toRow) {
+        if (!isValidMove(fromCol, fromRow, toCol, toRow)) return false;
+        
+        return leavesKingSafe(square(fromCol, fromRow), square(toCol, toRow));
+    }
+
+    private boolean leavesKingSafe(int from, int to) {
+        Player player = playerOf(squares[from]);
+        makeMove(Move.of(from, to));
+        boolean safe = !isKingInCheck(player);
+        unmakeMove();
+        return safe;
+    }
+
+    boolean isSquareAttacked(int square, Player byPlayer) {
+        return isSquareAttacked(bitboards, occupied, square, byPlayer);
+    }
+
+    private static boolean isSquareAttacked(long[] bitboards, long occupied, int square, Player byPlayer) {
+        int base = pieceIndex(byPlayer, Rank.KING);
+        if ((Attacks.pawn(byPlayer.opposite(), square) & bitboards[base + Rank.PAWN.ordinal()]) != 0
+                || (Attacks.knight(square) & bitboards[base + Rank.KNIGHT.ordinal()]) != 0
+                || (Attacks.king(square) & bitboards[base + Rank.KING.ordinal()]) != 0) {
+            return true;
+        }
+        long queens = bitboards[base + Rank.QUEEN.ordinal()];
+        long diagonal = bitboards[base + Rank.BISHOP.ordinal()] | queens;
+        long straight = bitboards[base + Rank.ROOK.ordinal()] | queens;
+        return (Attacks.bishop(square, occupied) & diagonal) != 0
+                || (Attacks.rook(square, occupied) & straight) != 0;
+    }
+
+    public boolean isCheckmate(Player player) {
+        if (player != playerInTurn || !isKingInCheck(player)) {
+            return false;
+        }
+        
+        return !hasLegalMove();
+    }
+
+    public boolean isStalemate(Player player) {
+        if (player != playerInTurn || isKingInCheck(player)) {
+            return false;
+        }
+        
+        return !hasLegalMove();
+    }
+
+    private boolean hasLegalMove() {
+        Player player = playerInTurn;
+        int count = generatePseudoLegalMoves(scratchMoves, false);
+        for (int i = 0; i < count; i++) {
+            makeMove(scratchMoves[i]);
+            boolean legal = !isKingInCheck(player);
+            unmakeMove();
+            if (legal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Writes the legal moves of the side to move into moves and returns how many there are
+    public int generateLegalMoves(int[] moves) {
+        return keepLegal(moves, generatePseudoLegalMoves(moves, false));
+    }
+
+    // Like generateLegalMoves but only captures, en passant and promotions
+    public int generateLegalCaptures(int[] moves) {
+        return keepLegal(moves, generatePseudoLegalMoves(moves, true));
+    }
+
+    // True if move, promotion included, is one of the legal moves of the side to move
+    public boolean isLegalMove(int move) {
+        Player player = playerInTurn;
+        int count = generatePseudoLegalMoves(scratchMoves, false);
+        for (int i = 0; i < count; i++) {
+            if (scratchMoves[i] == move) {
+                makeMove(move);
+                boolean legal = !isKingInCheck(player);
+                unmakeMove();
+                return legal;
+            }
+        }
+        return false;
+    }
+
+    private int keepLegal(int[] moves, int count) {
+        Player player = playerInTurn;
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            makeMove(move);
+            if (!isKingInCheck(player)) {
+                moves[legal++] = move;
+            }
+            unmakeMove();
+        }
+        return legal;
+    }
+
+    private int generatePseudoLegalMoves(int[] moves, boolean tacticalOnly) {
+        int count = 0;
+        long own = occupancy[playerInTurn.ordinal()];
+        long targets = tacticalOnly ? occupancy[playerInTurn.opposite().ordinal()] : ~own;
+        for (long pieces = own; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            switch (rankOf(squares[from])) {
+                case PAWN:
+                    count = addPawnMoves(from, tacticalOnly, moves, count);
+                    break;
+                case KNIGHT:
+                    count = addMoves(from, Attacks.knight(from) & targets, moves, count);
+                    break;
+                case BISHOP:
+                    count = addMoves(from, Attacks.bishop(from, occupied) & targets, moves, count);
+                    break;
+                case ROOK:
+                    count = addMoves(from, Attacks.rook(from, occupied) & targets, moves, count);
+                    break;
+                case QUEEN:
+                    count = addMoves(from, Attacks.queen(from, occupied) & targets, moves, count);
+                    break;
+                case KING:
+                    count = addMoves(from, Attacks.king(from) & targets, moves, count);
+                    if (!tacticalOnly) {
+                        count = addCastlingMoves(from, moves, count);
+                    }
+                    break;
+            }
+        }
+        return count;
+    }
+
+    private static int addMoves(int from, long targets, int[] moves, int count) {
+        for (; targets != 0; targets &= targets - 1) {
+            moves[count++] = Move.of(from, Long.numberOfTrailingZeros(targets));
+        }
+        return count;
+    }
+
+    private int addPawnMoves(int from, boolean tacticalOnly, int[] moves, int count) {
+        int direction = playerInTurn == Player.WHITE ? 1 : -1;
+        int startRow = playerInTurn == Player.WHITE ? 1 : 6;
+        int col = col(from);
+        int nextRow = row(from) + direction;
+        boolean promotes = nextRow == 0 || nextRow == 7;
+
+        if (isEmpty(col, nextRow) && (promotes || !tacticalOnly)) {
+            count = addPawnMove(from, square(col, nextRow), moves, count);
+            if (row(from) == startRow && !tacticalOnly && isEmpty(col, nextRow + direction)) {
+                moves[count++] = Move.of(from, square(col, nextRow + direction));
+            }
+        }
+
+        long victims = occupancy[playerInTurn.opposite().ordinal()];
+        if (enPassantSquare != NO_SQUARE) {
+            victims |= bit(enPassantSquare);
+        }
+        for (long targets = Attacks.pawn(playerInTurn, from) & victims; targets != 0; targets &= targets - 1) {
+            count = addPawnMove(from, Long.numberOfTrailingZeros(targets), moves, count);
+        }
+        return count;
+    }
+
+    private int addPawnMove(int from, int to, int[] moves, int count) {
+        if (row(to) == 0 || row(to) == 7) {
+            for (Rank promotion : PROMOTIONS) {
+                moves[count++] = Move.of(from, to, promotion);
+            }
+        } else {
+            moves[count++] = Move.of(from, to);
+        }
+        return count;
+    }
+
+    private int addCastlingMoves(int from, int[] moves, int count) {
+        int rights = playerInTurn == Player.WHITE
+                ? WHITE_KINGSIDE | WHITE_QUEENSIDE
+                : BLACK_KINGSIDE | BLACK_QUEENSIDE;
+        if ((castlingRights & rights) == 0) {
+            return count;
+        }
+        int col = col(from);
+        int row = row(from);
+        if (isValidCastling(col, row, col + 2, row)) {
+            moves[count++] = Move.of(from, square(col + 2, row));
+        }
+        if (isValidCastling(col, row, col - 2, row)) {
+            moves[count++] = Move.of(from, square(col - 2, row));
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder desc = new StringBuilder();
+        
+        for (int row = 7; row >= 0; row--) {
+            desc.append(row);
+            for (int col = 0; col < 8; col++) {
+                int piece = squares[square(col, row)];
+                if (piece == EMPTY) {
+                    desc.append(" .");
+                } else {
+                    desc.append(' ').append(PIECE_CHARS.charAt(piece));
+                }
+            }
+            desc.append("\n");
+        }
+        desc.append("  0 1 2 3 4 5 6 7");
+        
+        return desc.toString();
+    }
+}
@@ -1,25 +1,5 @@
 package com.goldthumb.chess;
 
-import java.util.Objects;
-
-enum Player {
-    WHITE,
-    BLACK;
-
-    public Player opposite() {
-        return this == WHITE ? BLACK : WHITE;
-    }
-}
-
-enum Rank {
-    KING,
-    QUEEN,
-    BISHOP,
-    ROOK,
-    KNIGHT,
-    PAWN;
-}
-
 public class ChessPiece {
     private  int col;
     private  int row;
@@ -30,12 +10,16 @@ public class ChessPiece {
     private boolean enPassantVulnerable;  
     
     public ChessPiece(int col, int row, Player player, Rank rank, String imgName) {
+        this(col, row, player, rank, imgName, false);
+    }
+
+    ChessPiece(int col, int row, Player player, Rank rank, String imgName, boolean hasMoved) {
         this.col = col;
         this.row = row;
         this.player = player;
         this.rank = rank;
         this.imgName = imgName;
-        this.hasMoved = false;
+        this.hasMoved = hasMoved;
         this.enPassantVulnerable = false;
     }
 
@@ -112,6 +96,6 @@ public class ChessPiece {
 
     @Override
     public int hashCode() {
-        return Objects.hash(col, row, player, rank);
+        return ((col * 8 + row) * 2 + player.ordinal()) * 6 + rank.ordinal();
     }
 }
\ No newline at end of file
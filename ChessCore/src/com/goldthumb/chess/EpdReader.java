@@ -0,0 +1,120 @@
+package com.goldthumb.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Streams FEN or EPD lines from a channel in large chunks. Lines are CharSequence
+// views over the read buffer, so loading millions of positions into a ChessModel
+// allocates nothing per line.
+//
+//   EpdReader [--perft N | --eval] <file>
+public final class EpdReader implements Closeable {
+    private final LineReader lines;
+
+    public EpdReader(ReadableByteChannel channel) {
+        this.lines = new LineReader(channel);
+    }
+
+    public static EpdReader open(Path path) throws IOException {
+        return new EpdReader(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    // Advances to the next line that is neither blank nor a # comment
+    public boolean next() throws IOException {
+        while (lines.next()) {
+            CharSequence line = lines.line();
+            int i = 0;
+            while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i < line.length() && line.charAt(i) != '#') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The current line; only valid until the next call to next()
+    public CharSequence line() {
+        return lines.line();
+    }
+
+    public long lineNumber() {
+        return lines.lineNumber();
+    }
+
+    public void loadInto(ChessModel model) {
+        model.loadFen(lines.line());
+    }
+
+    @Override
+    public void close() throws IOException {
+        lines.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int perftDepth = 0;
+        boolean evaluate = false;
+        Path file = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--perft":
+                    perftDepth = Integer.parseInt(args[++i]);
+                    break;
+                case "--eval":
+                    evaluate = true;
+                    break;
+                default:
+                    file = Paths.get(args[i]);
+            }
+        }
+        if (file == null) {
+            System.out.println("Usage: EpdReader [--perft N | --eval] <file>");
+            return;
+        }
+
+        ChessModel model = new ChessModel();
+        long positions = 0;
+        long illegal = 0;
+        long total = 0;
+        long start = System.nanoTime();
+        try (EpdReader reader = open(file)) {
+            while (reader.next()) {
+                try {
+                    reader.loadInto(model);
+                } catch (IllegalArgumentException e) {
+                    illegal++;
+                    System.out.println("line " + reader.lineNumber() + ": " + e.getMessage());
+                    continue;
+                }
+                // The side that just moved cannot be left in check
+                if (model.isKingInCheck(model.getPlayerInTurn().opposite())) {
+                    illegal++;
+                    System.out.println("line " + reader.lineNumber() + ": side not to move is in check");
+                    continue;
+                }
+                positions++;
+                if (perftDepth > 0) {
+                    total += Perft.perft(model, perftDepth);
+                } else if (evaluate) {
+                    total += model.evaluate();
+                }
+            }
+        }
+
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        System.out.println("Positions: " + positions + " (" + illegal + " rejected)");
+        if (perftDepth > 0) {
+            System.out.println("Perft " + perftDepth + " nodes: " + total);
+        } else if (evaluate && positions > 0) {
+            System.out.println("Mean evaluation: " + total / positions);
+        }
+        System.out.println("Time: " + millis + " ms");
+        System.out.println("Positions/second: " + positions * 1000 / millis);
+    }
+}
@@ -0,0 +1,156 @@
+package com.goldthumb.chess;
+
+// Running evaluation terms of a position: material plus piece-square values for
+// the middlegame and the endgame, and the game phase used to blend them.
+// ChessModel adds and removes pieces here as it changes the board, so every move,
+// capture, promotion, castling and en passant costs a few array reads.
+final class Evaluation {
+    static final int MAX_PHASE = 24;
+
+    // Indexed by Rank ordinal: KING, QUEEN, BISHOP, ROOK, KNIGHT, PAWN
+    private static final int[] MG_MATERIAL = {0, 900, 330, 500, 320, 100};
+    private static final int[] EG_MATERIAL = {0, 950, 340, 530, 300, 120};
+    private static final int[] PHASE = {0, 4, 1, 2, 1, 0};
+
+    // Piece-square tables from White's side, rank 8 first as the board is drawn
+    private static final int[] KING_MG = {
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+         20,  20,   0,   0,   0,   0,  20,  20,
+         20,  30,  10,   0,   0,  10,  30,  20,
+    };
+    private static final int[] KING_EG = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50,
+    };
+    private static final int[] QUEEN = {
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,   5,   5,   5,   0, -10,
+         -5,   0,   5,   5,   5,   5,   0,  -5,
+          0,   0,   5,   5,   5,   5,   0,  -5,
+        -10,   5,   5,   5,   5,   5,   0, -10,
+        -10,   0,   5,   0,   0,   0,   0, -10,
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+    };
+    private static final int[] BISHOP = {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,  10,  10,   5,   0, -10,
+        -10,   5,   5,  10,  10,   5,   5, -10,
+        -10,   0,  10,  10,  10,  10,   0, -10,
+        -10,  10,  10,  10,  10,  10,  10, -10,
+        -10,   5,   0,   0,   0,   0,   5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20,
+    };
+    private static final int[] ROOK = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+          5,  10,  10,  10,  10,  10,  10,   5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+          0,   0,   0,   5,   5,   0,   0,   0,
+    };
+    private static final int[] KNIGHT = {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20,   0,   0,   0,   0, -20, -40,
+        -30,   0,  10,  15,  15,  10,   0, -30,
+        -30,   5,  15,  20,  20,  15,   5, -30,
+        -30,   0,  15,  20,  20,  15,   0, -30,
+        -30,   5,  10,  15,  15,  10,   5, -30,
+        -40, -20,   0,   5,   5,   0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50,
+    };
+    private static final int[] PAWN_MG = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         10,  10,  20,  30,  30,  20,  10,  10,
+          5,   5,  10,  25,  25,  10,   5,   5,
+          0,   0,   0,  20,  20,   0,   0,   0,
+          5,  -5, -10,   0,   0, -10,  -5,   5,
+          5,  10,  10, -20, -20,  10,  10,   5,
+          0,   0,   0,   0,   0,   0,   0,   0,
+    };
+    private static final int[] PAWN_EG = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         80,  80,  80,  80,  80,  80,  80,  80,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         15,  15,  15,  15,  15,  15,  15,  15,
+          5,   5,   5,   5,   5,   5,   5,   5,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0,
+    };
+
+    private static final int[][] MG_TABLES = {KING_MG, QUEEN, BISHOP, ROOK, KNIGHT, PAWN_MG};
+    private static final int[][] EG_TABLES = {KING_EG, QUEEN, BISHOP, ROOK, KNIGHT, PAWN_EG};
+
+    // Signed values per piece index and square: positive for White, negative for Black
+    private static final int[] MG_VALUE = new int[Bitboards.PIECE_TYPES * 64];
+    private static final int[] EG_VALUE = new int[Bitboards.PIECE_TYPES * 64];
+
+    static {
+        for (int piece = 0; piece < Bitboards.PIECE_TYPES; piece++) {
+            int rank = piece % 6;
+            boolean white = Bitboards.playerOf(piece) == Player.WHITE;
+            for (int square = 0; square < 64; square++) {
+                int row = Bitboards.row(square);
+                int index = (white ? 7 - row : row) * 8 + Bitboards.col(square);
+                int sign = white ? 1 : -1;
+                MG_VALUE[piece * 64 + square] = sign * (MG_MATERIAL[rank] + MG_TABLES[rank][index]);
+                EG_VALUE[piece * 64 + square] = sign * (EG_MATERIAL[rank] + EG_TABLES[rank][index]);
+            }
+        }
+    }
+
+    private int mg;
+    private int eg;
+    private int phase;
+
+    void add(int piece, int square) {
+        mg += MG_VALUE[piece * 64 + square];
+        eg += EG_VALUE[piece * 64 + square];
+        phase += PHASE[piece % 6];
+    }
+
+    void remove(int piece, int square) {
+        mg -= MG_VALUE[piece * 64 + square];
+        eg -= EG_VALUE[piece * 64 + square];
+        phase -= PHASE[piece % 6];
+    }
+
+    void clear() {
+        mg = 0;
+        eg = 0;
+        phase = 0;
+    }
+
+    void copyFrom(Evaluation other) {
+        mg = other.mg;
+        eg = other.eg;
+        phase = other.phase;
+    }
+
+    // 24 with all minor and major pieces on the board, 0 with only kings and pawns
+    int phase() {
+        return Math.min(phase, MAX_PHASE);
+    }
+
+    // Centipawns from White's point of view, tapered between middlegame and endgame
+    int score() {
+        int p = phase();
+        return (mg * p + eg * (MAX_PHASE - p)) / MAX_PHASE;
+    }
+}
@@ -0,0 +1,244 @@
+package com.goldthumb.chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Memory-mapped reader for the binary game archive. A game is found through the
+// offset index and a move through its ply number, so nothing before it is read.
+//
+// Layout, big-endian: the magic "CGA1", then one record per game
+//   int length of the rest of the record
+//   byte result (GameResult ordinal), byte flags (1 = custom start position)
+//   short plies
+//   short + UTF-8 white player, short + UTF-8 black player, short + ASCII start FEN
+//   plies x short move (Move packing: from, to and promotion in 15 bits)
+// The .idx file next to it holds the offset of every record as a long.
+// The data file is mapped whole, and one mapping cannot exceed 2 GB, so an archive
+// is limited to MAX_FILE_SIZE bytes; GameArchiveWriter refuses games past that.
+//
+//   GameArchive <file> [game [ply]]
+public final class GameArchive {
+    static final byte[] MAGIC = {'C', 'G', 'A', '1'};
+    static final int CUSTOM_START = 1;
+    static final int FIXED_HEADER = 4 + 3 * 2;
+    static final int MAX_PLIES = 0xFFFF;
+    // The largest single mapping; also keeps every record offset an int
+    static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    private static final ChessModel START = new ChessModel();
+
+    static {
+        START.reset();
+    }
+
+    private final MappedByteBuffer data;
+    private final LongBuffer offsets;
+
+    private GameArchive(MappedByteBuffer data, LongBuffer offsets) {
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    static Path indexFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    // Rebuilds the index first if it does not cover the whole file
+    public static GameArchive open(Path file) throws IOException {
+        Path indexFile = indexFile(file);
+        if (!isIndexComplete(file, indexFile)) {
+            rebuildIndex(file);
+        }
+        try (FileChannel dataChannel = FileChannel.open(file, StandardOpenOption.READ);
+                FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            MappedByteBuffer data = dataChannel.map(FileChannel.MapMode.READ_ONLY, 0, dataChannel.size());
+            LongBuffer offsets = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size())
+                    .asLongBuffer();
+            return new GameArchive(data, offsets);
+        }
+    }
+
+    // The index is complete when its last record ends exactly at the end of the file
+    static boolean isIndexComplete(Path file, Path indexFile) throws IOException {
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+        try (FileChannel data = FileChannel.open(file, StandardOpenOption.READ);
+                FileChannel index = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            checkMagic(data, file);
+            long entries = index.size() / Long.BYTES;
+            if (index.size() % Long.BYTES != 0) {
+                return false;
+            }
+            if (entries == 0) {
+                return data.size() == MAGIC.length;
+            }
+            ByteBuffer last = ByteBuffer.allocate(Long.BYTES);
+            index.read(last, (entries - 1) * Long.BYTES);
+            long offset = last.getLong(0);
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            return offset + Integer.BYTES <= data.size() && data.read(length, offset) == Integer.BYTES
+                    && offset + Integer.BYTES + length.getInt(0) == data.size();
+        }
+    }
+
+    // Walks the record lengths, drops a trailing record cut short by a crash and rewrites the index
+    static void rebuildIndex(Path file) throws IOException {
+        try (FileChannel data = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            checkMagic(data, file);
+            long[] offsets = new long[1024];
+            int count = 0;
+            long offset = MAGIC.length;
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            while (offset + Integer.BYTES <= data.size()) {
+                length.clear();
+                data.read(length, offset);
+                long end = offset + Integer.BYTES + length.getInt(0);
+                if (length.getInt(0) < FIXED_HEADER || end > data.size()) {
+                    break;
+                }
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = offset;
+                offset = end;
+            }
+            data.truncate(offset);
+
+            ByteBuffer index = ByteBuffer.allocate(count * Long.BYTES);
+            index.asLongBuffer().put(offsets, 0, count);
+            Files.write(indexFile(file), index.array());
+        }
+    }
+
+    private static void checkMagic(FileChannel data, Path file) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        data.read(magic, 0);
+        if (!Arrays.equals(magic.array(), MAGIC)) {
+            throw new IOException("Not a game archive: " + file);
+        }
+    }
+
+    public int size() {
+        return offsets.limit();
+    }
+
+    public GameResult getResult(int game) throws IOException {
+        int result = Byte.toUnsignedInt(data.get(record(game) + 4));
+        GameResult[] results = GameResult.values();
+        if (result >= results.length) {
+            throw new IOException("Bad result " + result + " in game " + game);
+        }
+        return results[result];
+    }
+
+    public int getPlyCount(int game) {
+        return Short.toUnsignedInt(data.getShort(record(game) + 6));
+    }
+
+    public String getWhite(int game) {
+        return string(record(game) + 8, StandardCharsets.UTF_8);
+    }
+
+    public String getBlack(int game) {
+        int white = record(game) + 8;
+        return string(white + 2 + Short.toUnsignedInt(data.getShort(white)), StandardCharsets.UTF_8);
+    }
+
+    // null for the standard starting position
+    public String getStartFen(int game) {
+        int record = record(game);
+        if ((data.get(record + 5) & CUSTOM_START) == 0) {
+            return null;
+        }
+        return string(fenOffset(record), StandardCharsets.US_ASCII);
+    }
+
+    public int getMove(int game, int ply) {
+        int record = record(game);
+        int plies = Short.toUnsignedInt(data.getShort(record + 6));
+        if (ply < 0 || ply >= plies) {
+            throw new IndexOutOfBoundsException("No ply " + ply + " in game " + game);
+        }
+        int fen = fenOffset(record);
+        int moves = fen + 2 + Short.toUnsignedInt(data.getShort(fen));
+        return Short.toUnsignedInt(data.getShort(moves + 2 * ply));
+    }
+
+    // The position after the first plies moves of the game; a start position or move
+    // that is not legal means the file is corrupt
+    public ChessModel positionAt(int game, int plies) throws IOException {
+        String fen = getStartFen(game);
+        ChessModel model;
+        if (fen == null) {
+            model = new ChessModel(START);
+        } else {
+            model = new ChessModel();
+            try {
+                model.loadFen(fen);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Bad start position in game " + game + ": " + e.getMessage(), e);
+            }
+        }
+        for (int ply = 0; ply < plies; ply++) {
+            int move = getMove(game, ply);
+            if (!model.isLegalMove(move)) {
+                throw new IOException("Illegal move " + Move.toString(move) + " at ply " + ply + " in game " + game);
+            }
+            model.makeMove(move);
+        }
+        return model;
+    }
+
+    private int record(int game) {
+        return (int) offsets.get(game);
+    }
+
+    private int fenOffset(int record) {
+        int white = record + 8;
+        int black = white + 2 + Short.toUnsignedInt(data.getShort(white));
+        return black + 2 + Short.toUnsignedInt(data.getShort(black));
+    }
+
+    private String string(int offset, Charset charset) {
+        byte[] bytes = new byte[Short.toUnsignedInt(data.getShort(offset))];
+        data.get(offset + 2, bytes);
+        return new String(bytes, charset);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: GameArchive <file> [game [ply]]");
+            return;
+        }
+        GameArchive archive = open(Paths.get(args[0]));
+        if (args.length == 1) {
+            System.out.println(archive.size() + " games");
+            for (int game = 0; game < Math.min(archive.size(), 20); game++) {
+                System.out.println(game + ": " + archive.getWhite(game) + " - " + archive.getBlack(game) + " "
+                        + archive.getResult(game) + ", " + archive.getPlyCount(game) + " plies");
+            }
+            return;
+        }
+
+        int game = Integer.parseInt(args[1]);
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : archive.getPlyCount(game);
+        StringBuilder moves = new StringBuilder();
+        for (int ply = 0; ply < plies; ply++) {
+            moves.append(Move.toString(archive.getMove(game, ply))).append(' ');
+        }
+        System.out.println(archive.getWhite(game) + " - " + archive.getBlack(game) + " " + archive.getResult(game));
+        System.out.println(moves.toString().trim());
+        System.out.println(archive.positionAt(game, plies).toFen());
+    }
+}
@@ -0,0 +1,101 @@
+package com.goldthumb.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Appends games to a binary archive (see GameArchive for the layout) and their
+// offsets to the .idx file next to it.
+public final class GameArchiveWriter implements Closeable {
+    private final FileChannel data;
+    private final FileChannel index;
+
+    private GameArchiveWriter(FileChannel data, FileChannel index) {
+        this.data = data;
+        this.index = index;
+    }
+
+    public static GameArchiveWriter open(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (Files.exists(file) && Files.size(file) > 0
+                && !GameArchive.isIndexComplete(file, GameArchive.indexFile(file))) {
+            GameArchive.rebuildIndex(file);
+        }
+
+        FileChannel data = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileChannel index = FileChannel.open(GameArchive.indexFile(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        if (data.size() == 0) {
+            data.write(ByteBuffer.wrap(GameArchive.MAGIC), 0);
+            index.truncate(0);
+        }
+        return new GameArchiveWriter(data, index);
+    }
+
+    // Archives the moves played since the model was reset or loaded from a FEN
+    public void append(String white, String black, GameResult result, ChessModel game) throws IOException {
+        int[] moves = new int[game.getPly()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = game.moveAt(i);
+        }
+        append(white, black, result, game.getStartFen(), moves, moves.length);
+    }
+
+    // startFen is null for games from the standard starting position
+    public synchronized void append(String white, String black, GameResult result, String startFen,
+            int[] moves, int count) throws IOException {
+        if (count > GameArchive.MAX_PLIES) {
+            throw new IllegalArgumentException("Too many moves to archive: " + count);
+        }
+        byte[] whiteName = truncate(white.getBytes(StandardCharsets.UTF_8));
+        byte[] blackName = truncate(black.getBytes(StandardCharsets.UTF_8));
+        byte[] fen = startFen == null ? new byte[0] : truncate(startFen.getBytes(StandardCharsets.US_ASCII));
+
+        int length = GameArchive.FIXED_HEADER + whiteName.length + blackName.length + fen.length + 2 * count;
+        ByteBuffer record = ByteBuffer.allocate(4 + length);
+        record.putInt(length);
+        record.put((byte) result.ordinal());
+        record.put((byte) (startFen == null ? 0 : GameArchive.CUSTOM_START));
+        record.putShort((short) count);
+        record.putShort((short) whiteName.length).put(whiteName);
+        record.putShort((short) blackName.length).put(blackName);
+        record.putShort((short) fen.length).put(fen);
+        for (int i = 0; i < count; i++) {
+            record.putShort((short) moves[i]);
+        }
+        record.flip();
+
+        long offset = data.size();
+        if (offset + record.remaining() > GameArchive.MAX_FILE_SIZE) {
+            throw new IOException("Game archive is full");
+        }
+        while (record.hasRemaining()) {
+            data.write(record, offset + record.position());
+        }
+        // The index entry is written last, so a crash can only leave a game without one
+        ByteBuffer entry = ByteBuffer.allocate(Long.BYTES).putLong(0, offset);
+        index.write(entry, index.size());
+    }
+
+    private static byte[] truncate(byte[] bytes) {
+        return bytes.length <= 0xFFFF ? bytes : Arrays.copyOf(bytes, 0xFFFF);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+}
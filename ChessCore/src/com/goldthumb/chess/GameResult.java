@@ -0,0 +1,38 @@
+package com.goldthumb.chess;
+
+public enum GameResult {
+    UNKNOWN("*"), WHITE_WINS("1-0"), BLACK_WINS("0-1"), DRAW("1/2-1/2");
+
+    private final String pgn;
+
+    GameResult(String pgn) {
+        this.pgn = pgn;
+    }
+
+    public static GameResult fromPgn(String text) {
+        for (GameResult result : values()) {
+            if (result.pgn.equals(text)) {
+                return result;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    // The result the rules decide for the position; threefold repetition and the
+    // fifty-move rule count as draws without a claim
+    public static GameResult of(ChessModel model) {
+        Player player = model.getPlayerInTurn();
+        if (model.isCheckmate(player)) {
+            return player == Player.WHITE ? BLACK_WINS : WHITE_WINS;
+        }
+        if (model.isStalemate(player) || model.isThreefoldRepetition() || model.getHalfmoveClock() >= 100) {
+            return DRAW;
+        }
+        return UNKNOWN;
+    }
+
+    @Override
+    public String toString() {
+        return pgn;
+    }
+}
@@ -0,0 +1,120 @@
+package com.goldthumb.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Splits a channel into lines, reading it in large chunks. Each line is exposed as a
+// CharSequence view over the read buffer, valid until the next call to next(), so
+// memory stays at one buffer however large the input is.
+final class LineReader implements Closeable {
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private final ReadableByteChannel channel;
+    private final Line line = new Line();
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    // Bytes [lineStart, limit) are unread; scan is where the search for '\n' resumes
+    private int lineStart;
+    private int scan;
+    private int limit;
+    private long lineNumber;
+    private boolean eof;
+
+    LineReader(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    boolean next() throws IOException {
+        while (true) {
+            for (; scan < limit; scan++) {
+                if (buffer[scan] == '\n') {
+                    int end = scan > lineStart && buffer[scan - 1] == '\r' ? scan - 1 : scan;
+                    line.set(buffer, lineStart, end - lineStart);
+                    lineStart = ++scan;
+                    lineNumber++;
+                    return true;
+                }
+            }
+            if (eof) {
+                if (lineStart == limit) {
+                    return false;
+                }
+                line.set(buffer, lineStart, limit - lineStart);
+                lineStart = limit;
+                lineNumber++;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    // Moves the unfinished line to the front of the buffer and reads more behind it
+    private void fill() throws IOException {
+        int pending = limit - lineStart;
+        if (pending == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        } else {
+            System.arraycopy(buffer, lineStart, buffer, 0, pending);
+        }
+        lineStart = 0;
+        scan = pending;
+        limit = pending;
+
+        ByteBuffer target = ByteBuffer.wrap(buffer, limit, buffer.length - limit);
+        int read = channel.read(target);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    CharSequence line() {
+        return line;
+    }
+
+    long lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Read-only ASCII view of one line in the buffer
+    private static final class Line implements CharSequence {
+        private byte[] bytes;
+        private int offset;
+        private int length;
+
+        void set(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[offset + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
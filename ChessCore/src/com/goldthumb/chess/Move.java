@@ -0,0 +1,57 @@
+package com.goldthumb.chess;
+
+// Moves are packed into an int: from square, to square and promotion rank.
+public final class Move {
+    public static final int NONE = 0;
+
+    private static final Rank[] RANKS = Rank.values();
+
+    private Move() {
+    }
+
+    public static int of(int from, int to) {
+        return from | to << 6;
+    }
+
+    public static int of(int from, int to, Rank promotion) {
+        return from | to << 6 | promotion.ordinal() << 12;
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move >>> 12) != 0;
+    }
+
+    public static Rank promotion(int move) {
+        return RANKS[(move >>> 12) & 7];
+    }
+
+    // Whether the promotion bits are empty or name a piece a pawn can become.
+    // Moves read from outside must pass this before promotion() is called on them.
+    public static boolean isWellFormed(int move) {
+        int promotion = move >>> 12;
+        return promotion == 0 || (promotion >= Rank.QUEEN.ordinal() && promotion <= Rank.KNIGHT.ordinal());
+    }
+
+    // Coordinate notation, e.g. e2e4 or e7e8q
+    public static String toString(int move) {
+        StringBuilder text = new StringBuilder(5);
+        appendSquare(text, from(move));
+        appendSquare(text, to(move));
+        if (isPromotion(move)) {
+            text.append(isWellFormed(move) ? "kqbrnp".charAt(promotion(move).ordinal()) : '?');
+        }
+        return text.toString();
+    }
+
+    private static void appendSquare(StringBuilder text, int square) {
+        text.append((char) ('a' + Bitboards.col(square))).append((char) ('1' + Bitboards.row(square)));
+    }
+}
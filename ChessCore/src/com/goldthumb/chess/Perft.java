@@ -0,0 +1,231 @@
+package com.goldthumb.chess;
+
+import static com.goldthumb.chess.Text.parseNumber;
+import static com.goldthumb.chess.Text.skipDigits;
+import static com.goldthumb.chess.Text.skipSpaces;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+// Counts leaf nodes of the legal move tree to verify and benchmark the move generator.
+//
+//   Perft [--divide] [--threads N] <depth> [fen]
+//   Perft [--threads N] --suite [maxDepth]
+public final class Perft {
+    private static final String SUITE = "perft/standard.epd";
+    private static final int DEFAULT_SUITE_DEPTH = 4;
+
+    private Perft() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean divide = false;
+        boolean suite = false;
+        int threads = 1;
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--divide":
+                    divide = true;
+                    break;
+                case "--suite":
+                    suite = true;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    rest.add(args[i]);
+            }
+        }
+
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            if (suite) {
+                int maxDepth = rest.isEmpty() ? DEFAULT_SUITE_DEPTH : Integer.parseInt(rest.get(0));
+                if (!runSuite(maxDepth, pool)) {
+                    System.exit(1);
+                }
+            } else if (!rest.isEmpty()) {
+                int depth = Integer.parseInt(rest.get(0));
+                ChessModel model = new ChessModel();
+                if (rest.size() > 1) {
+                    model.loadFen(String.join(" ", rest.subList(1, rest.size())));
+                } else {
+                    model.reset();
+                }
+                long start = System.nanoTime();
+                long nodes = divide(model, depth, pool, divide ? System.out : null);
+                report(System.out, nodes, System.nanoTime() - start);
+            } else {
+                System.out.println("Usage: Perft [--divide] [--threads N] <depth> [fen]");
+                System.out.println("       Perft [--threads N] --suite [maxDepth]");
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    public static long perft(ChessModel model, int depth) {
+        return depth == 0 ? 1 : perft(model, depth, new int[depth + 1][ChessModel.MAX_MOVES]);
+    }
+
+    private static long perft(ChessModel model, int depth, int[][] moves) {
+        int count = model.generateLegalMoves(moves[depth]);
+        if (depth == 1) {
+            return count;
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            model.makeMove(moves[depth][i]);
+            nodes += perft(model, depth - 1, moves);
+            model.unmakeMove();
+        }
+        return nodes;
+    }
+
+    // Splits the count by root move; with a pool every root move is counted on its own copy of the model
+    public static long divide(ChessModel model, int depth, ForkJoinPool pool, PrintStream out) {
+        if (depth == 0) {
+            return 1;
+        }
+        int[] rootMoves = new int[ChessModel.MAX_MOVES];
+        int count = model.generateLegalMoves(rootMoves);
+        long[] nodes = new long[count];
+
+        if (pool == null) {
+            int[][] moves = new int[depth][ChessModel.MAX_MOVES];
+            for (int i = 0; i < count; i++) {
+                model.makeMove(rootMoves[i]);
+                nodes[i] = depth == 1 ? 1 : perft(model, depth - 1, moves);
+                model.unmakeMove();
+            }
+        } else {
+            List<RootMoveTask> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                tasks.add(new RootMoveTask(model, rootMoves[i], depth - 1));
+            }
+            pool.invoke(new RecursiveTask<Void>() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected Void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                    return null;
+                }
+            });
+            for (int i = 0; i < count; i++) {
+                nodes[i] = tasks.get(i).join();
+            }
+        }
+
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            if (out != null) {
+                out.println(Move.toString(rootMoves[i]) + ": " + nodes[i]);
+            }
+            total += nodes[i];
+        }
+        return total;
+    }
+
+    private static boolean runSuite(int maxDepth, ForkJoinPool pool) throws IOException {
+        boolean passed = true;
+        long totalNodes = 0;
+        long totalTime = 0;
+        ChessModel model = new ChessModel();
+        try (EpdReader reader = new EpdReader(openSuite())) {
+            while (reader.next()) {
+                CharSequence line = reader.line();
+                reader.loadInto(model);
+                String fen = model.toFen();
+                // Operations after the FEN look like ";D1 20 ;D2 400"
+                for (int i = indexOf(line, ';', 0); i >= 0; i = indexOf(line, ';', i + 1)) {
+                    int depthStart = skipSpaces(line, i + 1) + 1;
+                    int depthEnd = skipDigits(line, depthStart);
+                    int countStart = skipSpaces(line, depthEnd);
+                    int depth = (int) parseNumber(line, depthStart, depthEnd, Integer.MAX_VALUE);
+                    long expected = parseNumber(line, countStart, skipDigits(line, countStart), Long.MAX_VALUE);
+                    if (depth > maxDepth) {
+                        continue;
+                    }
+                    model.loadFen(fen);
+                    long start = System.nanoTime();
+                    long nodes = divide(model, depth, pool, null);
+                    long elapsed = System.nanoTime() - start;
+                    totalNodes += nodes;
+                    totalTime += elapsed;
+                    boolean ok = nodes == expected;
+                    passed &= ok;
+                    System.out.printf("%s %s depth %d: %d%s%n", ok ? "OK  " : "FAIL", fen, depth, nodes,
+                            ok ? "" : " (expected " + expected + ")");
+                }
+            }
+        }
+        report(System.out, totalNodes, totalTime);
+        return passed;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static ReadableByteChannel openSuite() throws IOException {
+        InputStream is = Perft.class.getResourceAsStream("/" + SUITE);
+        if (is != null) {
+            return Channels.newChannel(is);
+        }
+        Path file = Paths.get("res", SUITE);
+        if (Files.exists(file)) {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        }
+        throw new FileNotFoundException("Perft suite not found in both resources and file system: " + SUITE);
+    }
+
+    private static void report(PrintStream out, long nodes, long elapsedNanos) {
+        long millis = Math.max(1, elapsedNanos / 1_000_000);
+        out.println();
+        out.println("Nodes: " + nodes);
+        out.println("Time: " + millis + " ms");
+        out.println("Nodes/second: " + nodes * 1000 / millis);
+    }
+
+    private static final class RootMoveTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final ChessModel model;
+        private final int depth;
+
+        RootMoveTask(ChessModel root, int move, int depth) {
+            this.model = new ChessModel(root);
+            this.model.makeMove(move);
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            return depth == 0 ? 1L : perft(model, depth, new int[depth + 1][ChessModel.MAX_MOVES]);
+        }
+    }
+}
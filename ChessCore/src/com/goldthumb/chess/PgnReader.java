@@ -0,0 +1,148 @@
+package com.goldthumb.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Splits a PGN stream into games without reading it all: the channel is read in
+// chunks and only the game being assembled is held in memory. A game ends where
+// the next tag section starts, outside of any brace comment.
+public final class PgnReader implements Closeable {
+    private final LineReader lines;
+    private boolean pendingLine;
+    private long gameCount;
+
+    public PgnReader(ReadableByteChannel channel) {
+        this.lines = new LineReader(channel);
+    }
+
+    public static PgnReader open(Path path) throws IOException {
+        return new PgnReader(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    // The next game, or null at the end of the input
+    public Game next() throws IOException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        StringBuilder movetext = new StringBuilder();
+        long firstLine = 0;
+        boolean inComment = false;
+        boolean inMoves = false;
+
+        while (pendingLine || lines.next()) {
+            pendingLine = false;
+            CharSequence line = lines.line();
+            int i = 0;
+            while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i == line.length() || (i == 0 && line.charAt(0) == '%')) {
+                continue;
+            }
+
+            if (line.charAt(i) == '[' && !inComment) {
+                if (inMoves) {
+                    // First tag of the next game; read it on the next call
+                    pendingLine = true;
+                    break;
+                }
+                if (firstLine == 0) {
+                    firstLine = lines.lineNumber();
+                }
+                parseTag(line, i, tags);
+                continue;
+            }
+
+            if (firstLine == 0) {
+                firstLine = lines.lineNumber();
+            }
+            inMoves = true;
+            movetext.append(line).append('\n');
+            for (int j = i; j < line.length(); j++) {
+                char c = line.charAt(j);
+                if (c == '{') {
+                    inComment = true;
+                } else if (c == '}') {
+                    inComment = false;
+                } else if (c == ';' && !inComment) {
+                    break;
+                }
+            }
+        }
+
+        if (firstLine == 0) {
+            return null;
+        }
+        return new Game(++gameCount, firstLine, tags, movetext.toString());
+    }
+
+    // [Name "value"], with \" and \\ escapes in the value
+    private static void parseTag(CharSequence line, int start, Map<String, String> tags) {
+        int i = start + 1;
+        int nameStart = i;
+        while (i < line.length() && !Character.isWhitespace(line.charAt(i)) && line.charAt(i) != '"') {
+            i++;
+        }
+        String name = line.subSequence(nameStart, i).toString();
+        while (i < line.length() && line.charAt(i) != '"') {
+            i++;
+        }
+        StringBuilder value = new StringBuilder();
+        for (i++; i < line.length() && line.charAt(i) != '"'; i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                c = line.charAt(++i);
+            }
+            value.append(c);
+        }
+        if (!name.isEmpty()) {
+            tags.put(name, value.toString());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lines.close();
+    }
+
+    public static final class Game {
+        private final long number;
+        private final long line;
+        private final Map<String, String> tags;
+        private final String movetext;
+
+        Game(long number, long line, Map<String, String> tags, String movetext) {
+            this.number = number;
+            this.line = line;
+            this.tags = Collections.unmodifiableMap(tags);
+            this.movetext = movetext;
+        }
+
+        // 1-based position of the game in the input
+        public long getNumber() {
+            return number;
+        }
+
+        // Line the game starts on
+        public long getLine() {
+            return line;
+        }
+
+        public String getTag(String name) {
+            return tags.get(name);
+        }
+
+        public Map<String, String> getTags() {
+            return tags;
+        }
+
+        public String getMovetext() {
+            return movetext;
+        }
+    }
+}
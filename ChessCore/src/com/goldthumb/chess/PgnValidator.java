@@ -0,0 +1,274 @@
+package com.goldthumb.chess;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Replays every game of a PGN file through ChessModel to check that all moves are legal.
+// One thread splits the file into games and hands them to the workers through a
+// bounded queue, so memory stays flat however large the file is. Valid games can be
+// written to a binary game archive on the way.
+//
+//   PgnValidator [--threads N] [--archive games.cga] <file.pgn>
+public final class PgnValidator {
+    private static final int QUEUE_PER_THREAD = 256;
+    private static final PgnReader.Game END = new PgnReader.Game(0, 0, Map.of(), "");
+
+    private final LongAdder games = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final AtomicLong unarchived = new AtomicLong();
+    private final GameArchiveWriter archive;
+
+    PgnValidator(GameArchiveWriter archive) {
+        this.archive = archive;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String file = null;
+        String archiveFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--archive")) {
+                archiveFile = args[++i];
+            } else {
+                file = args[i];
+            }
+        }
+        if (file == null) {
+            System.out.println("Usage: PgnValidator [--threads N] [--archive games.cga] <file.pgn>");
+            return;
+        }
+
+        GameArchiveWriter archive = archiveFile == null ? null : GameArchiveWriter.open(Paths.get(archiveFile));
+        PgnValidator validator = new PgnValidator(archive);
+        long start = System.nanoTime();
+        try (PgnReader reader = PgnReader.open(Paths.get(file))) {
+            validator.run(reader, threads);
+        } finally {
+            if (archive != null) {
+                archive.close();
+            }
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        long gameCount = validator.games.sum();
+        long moveCount = validator.moves.sum();
+        System.out.println();
+        System.out.println("Games: " + gameCount + " (" + validator.invalid.sum() + " invalid)");
+        if (archive != null) {
+            System.out.println("Not archived: " + validator.unarchived.get());
+        }
+        System.out.println("Moves: " + moveCount);
+        System.out.println("Time: " + millis + " ms");
+        System.out.println("Games/second: " + gameCount * 1000 / millis);
+        System.out.println("Moves/second: " + moveCount * 1000 / millis);
+        if (validator.invalid.sum() > 0 || validator.unarchived.get() > 0) {
+            System.exit(1);
+        }
+    }
+
+    long getGames() {
+        return games.sum();
+    }
+
+    long getInvalid() {
+        return invalid.sum();
+    }
+
+    long getUnarchived() {
+        return unarchived.get();
+    }
+
+    void run(PgnReader reader, int threads) throws IOException, InterruptedException {
+        BlockingQueue<PgnReader.Game> queue = new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> work(queue));
+        }
+        try {
+            PgnReader.Game game;
+            while ((game = reader.next()) != null) {
+                queue.put(game);
+            }
+        } finally {
+            for (int i = 0; i < threads; i++) {
+                queue.put(END);
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+    }
+
+    private void work(BlockingQueue<PgnReader.Game> queue) {
+        ChessModel model = new ChessModel();
+        int[] legal = new int[ChessModel.MAX_MOVES];
+        try {
+            PgnReader.Game game;
+            while ((game = queue.take()) != END) {
+                // Nothing may escape and kill the worker, or the reader blocks on a full queue
+                String error;
+                try {
+                    error = replay(game, model, legal);
+                } catch (RuntimeException e) {
+                    error = e.toString();
+                }
+                games.increment();
+                if (error != null) {
+                    invalid.increment();
+                    System.out.println(describe(game) + ": " + error);
+                } else if (archive != null) {
+                    try {
+                        archiveGame(game, model);
+                    } catch (IOException | RuntimeException e) {
+                        // Reported once; a broken archive would fail every game after it the same way
+                        if (unarchived.getAndIncrement() == 0) {
+                            System.err.println(describe(game) + " not archived: " + e);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String describe(PgnReader.Game game) {
+        return "Game " + game.getNumber() + " (line " + game.getLine() + ", "
+                + game.getTag("White") + " - " + game.getTag("Black") + ")";
+    }
+
+    private void archiveGame(PgnReader.Game game, ChessModel model) throws IOException {
+        int[] played = new int[model.getPly()];
+        for (int i = 0; i < played.length; i++) {
+            played[i] = model.moveAt(i);
+        }
+        archive.append(String.valueOf(game.getTag("White")), String.valueOf(game.getTag("Black")),
+                GameResult.fromPgn(game.getTag("Result")), game.getTag("FEN"), played, played.length);
+    }
+
+    // Plays the movetext on model; returns null if every move was legal, otherwise what went wrong
+    private String replay(PgnReader.Game game, ChessModel model, int[] legal) {
+        String fen = game.getTag("FEN");
+        try {
+            if (fen != null) {
+                model.loadFen(fen);
+            } else {
+                model.reset();
+            }
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+
+        String text = game.getMovetext();
+        int plies = 0;
+        int i = 0;
+        int length = text.length();
+        try {
+            while (i < length) {
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c) || c == ')') {
+                    i++;
+                } else if (c == '{') {
+                    i = skipPast(text, i, '}');
+                } else if (c == ';') {
+                    i = skipPast(text, i, '\n');
+                } else if (c == '(') {
+                    i = skipVariation(text, i);
+                } else if (c == '$') {
+                    for (i++; i < length && Character.isDigit(text.charAt(i)); i++) {
+                    }
+                } else {
+                    int end = i;
+                    while (end < length && !isTokenEnd(text.charAt(end))) {
+                        end++;
+                    }
+                    int start = skipMoveNumber(text, i, end);
+                    i = end;
+                    if (start == end) {
+                        continue;
+                    }
+                    if (isResult(text, start, end)) {
+                        break;
+                    }
+                    int move = San.parse(model, text, start, end, legal);
+                    if (move == Move.NONE || move == San.AMBIGUOUS) {
+                        return (move == Move.NONE ? "illegal move " : "ambiguous move ")
+                                + text.substring(start, end) + " at ply " + (plies + 1)
+                                + " (" + moveLabel(model) + ") in " + model.toFen();
+                    }
+                    model.makeMove(move);
+                    plies++;
+                }
+            }
+            return null;
+        } finally {
+            moves.add(plies);
+        }
+    }
+
+    private static String moveLabel(ChessModel model) {
+        return model.getFullmoveNumber() + (model.getPlayerInTurn() == Player.WHITE ? "." : "...");
+    }
+
+    private static boolean isTokenEnd(char c) {
+        return Character.isWhitespace(c) || c == '{' || c == '(' || c == ')' || c == ';' || c == '$';
+    }
+
+    // Skips "12." or "12..." in front of a move, including the "12.e4" form
+    private static int skipMoveNumber(String text, int start, int end) {
+        int i = start;
+        while (i < end && Character.isDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i == start || (i < end && text.charAt(i) != '.')) {
+            return start;
+        }
+        while (i < end && text.charAt(i) == '.') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isResult(String text, int start, int end) {
+        return isToken(text, start, end, "1-0") || isToken(text, start, end, "0-1")
+                || isToken(text, start, end, "1/2-1/2") || isToken(text, start, end, "*");
+    }
+
+    private static boolean isToken(String text, int start, int end, String token) {
+        return end - start == token.length() && text.startsWith(token, start);
+    }
+
+    private static int skipPast(String text, int i, char end) {
+        int found = text.indexOf(end, i + 1);
+        return found < 0 ? text.length() : found + 1;
+    }
+
+    // Variations may nest and contain comments
+    private static int skipVariation(String text, int i) {
+        int depth = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                i = skipPast(text, i, '}');
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+}
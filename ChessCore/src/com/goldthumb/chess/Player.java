@@ -0,0 +1,10 @@
+package com.goldthumb.chess;
+
+public enum Player {
+    WHITE,
+    BLACK;
+
+    public Player opposite() {
+        return this == WHITE ? BLACK : WHITE;
+    }
+}
@@ -0,0 +1,161 @@
+package com.goldthumb.chess;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Read-only Polyglot opening book (.bin). The file is memory-mapped, never
+// copied onto the heap, so the OS page cache holds one copy for every game
+// and process on the host. Entries are 16 big-endian bytes sorted by key:
+// key (8), move (2), weight (2), learn (4).
+// Only absolute reads are used, so one book can be shared by any number of threads.
+// Entries are looked up by ChessModel.positionKey(), which is the Polyglot key.
+public final class PolyglotBook {
+    public enum Selection {
+        BEST, WEIGHTED_RANDOM
+    }
+
+    private static final int ENTRY_BYTES = 16;
+    // Entries per mapped segment; a single mapping is limited to 2 GB
+    private static final int SEGMENT_SHIFT = 26;
+    private static final int SEGMENT_ENTRIES = 1 << SEGMENT_SHIFT;
+    // Size of the arrays passed to selectMove; more entries for one position are ignored
+    public static final int MAX_BOOK_MOVES = 64;
+
+    // Polyglot promotion piece codes 1-4
+    private static final Rank[] PROMOTIONS = {null, Rank.KNIGHT, Rank.BISHOP, Rank.ROOK, Rank.QUEEN};
+
+    private final MappedByteBuffer[] segments;
+    private final long entryCount;
+
+    private PolyglotBook(MappedByteBuffer[] segments, long entryCount) {
+        this.segments = segments;
+        this.entryCount = entryCount;
+    }
+
+    public static PolyglotBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % ENTRY_BYTES != 0) {
+                throw new IOException("Not a Polyglot book, size is not a multiple of 16: " + path);
+            }
+            long entries = size / ENTRY_BYTES;
+            int segmentCount = (int) ((entries + SEGMENT_ENTRIES - 1) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long offset = (long) i * SEGMENT_ENTRIES * ENTRY_BYTES;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min((long) SEGMENT_ENTRIES * ENTRY_BYTES, size - offset));
+                segments[i].order(ByteOrder.BIG_ENDIAN);
+            }
+            // The mapping stays valid after the channel is closed
+            return new PolyglotBook(segments, entries);
+        }
+    }
+
+    public long size() {
+        return entryCount;
+    }
+
+    // A legal book move for the position, or Move.NONE when the book has none;
+    // moves and weights are the caller's scratch space, see probe
+    public int selectMove(ChessModel model, Selection selection, int[] moves, int[] weights) {
+        int count = probe(model, moves, weights);
+        if (count == 0) {
+            return Move.NONE;
+        }
+
+        if (selection == Selection.BEST) {
+            int best = 0;
+            for (int i = 1; i < count; i++) {
+                if (weights[i] > weights[best]) {
+                    best = i;
+                }
+            }
+            return moves[best];
+        }
+
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += weights[i];
+        }
+        if (total == 0) {
+            return moves[ThreadLocalRandom.current().nextInt(count)];
+        }
+        long pick = ThreadLocalRandom.current().nextLong(total);
+        for (int i = 0; i < count; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return moves[i];
+            }
+        }
+        return moves[count - 1];
+    }
+
+    // Fills moves and weights with the book entries of the position that are legal there;
+    // returns how many were found. Nothing is allocated, so this can run on every move.
+    public int probe(ChessModel model, int[] moves, int[] weights) {
+        long key = model.positionKey();
+        int count = 0;
+        for (long i = lowerBound(key); i < entryCount && keyAt(i) == key && count < moves.length; i++) {
+            int move = decode(model, Short.toUnsignedInt(segment(i).getShort(offset(i) + 8)));
+            if (model.isLegalMove(move)) {
+                moves[count] = move;
+                weights[count] = Short.toUnsignedInt(segment(i).getShort(offset(i) + 10));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Index of the first entry whose key is not below key, comparing keys as unsigned
+    private long lowerBound(long key) {
+        long low = 0;
+        long high = entryCount;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(long index) {
+        return segment(index).getLong(offset(index));
+    }
+
+    private MappedByteBuffer segment(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)];
+    }
+
+    private static int offset(long index) {
+        return (int) (index & (SEGMENT_ENTRIES - 1)) * ENTRY_BYTES;
+    }
+
+    // Polyglot moves: to file 0-2, to row 3-5, from file 6-8, from row 9-11, promotion 12-14.
+    // Castling is written as the king capturing its own rook and becomes e1g1 style here.
+    private static int decode(ChessModel model, int bookMove) {
+        int to = Bitboards.square(bookMove & 7, (bookMove >>> 3) & 7);
+        int from = Bitboards.square((bookMove >>> 6) & 7, (bookMove >>> 9) & 7);
+        int promotion = (bookMove >>> 12) & 7;
+
+        int piece = model.pieceIndexAt(from);
+        if (piece != Bitboards.EMPTY && Bitboards.rankOf(piece) == Rank.KING
+                && model.pieceIndexAt(to) == Bitboards.pieceIndex(Bitboards.playerOf(piece), Rank.ROOK)) {
+            int row = Bitboards.row(from);
+            to = Bitboards.square(Bitboards.col(to) > Bitboards.col(from) ? 6 : 2, row);
+        }
+
+        if (promotion > 0 && promotion < PROMOTIONS.length) {
+            return Move.of(from, to, PROMOTIONS[promotion]);
+        }
+        return Move.of(from, to);
+    }
+}
@@ -0,0 +1,80 @@
+package com.goldthumb.chess;
+
+import static com.goldthumb.chess.Bitboards.onBoard;
+import static com.goldthumb.chess.Bitboards.square;
+
+// Immutable copy of a ChessModel position, published after every move played so that
+// rendering, analysis or broadcasting threads can read a consistent board without locks.
+// Squares that did not change share their ChessPiece with the previous position.
+public final class Position {
+    private final long[] bitboards;
+    private final ChessPiece[] pieces;
+    private final Player playerInTurn;
+    private final int castlingRights;
+    private final int enPassantSquare;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+    private final int ply;
+    private final int lastMove;
+    private final long key;
+
+    Position(long[] bitboards, ChessPiece[] pieces, Player playerInTurn, int castlingRights,
+            int enPassantSquare, int halfmoveClock, int fullmoveNumber, int ply, int lastMove, long key) {
+        this.bitboards = bitboards;
+        this.pieces = pieces;
+        this.playerInTurn = playerInTurn;
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantSquare;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.ply = ply;
+        this.lastMove = lastMove;
+        this.key = key;
+    }
+
+    public ChessPiece pieceAt(int col, int row) {
+        return onBoard(col, row) ? pieces[square(col, row)] : null;
+    }
+
+    public Player getPlayerInTurn() {
+        return playerInTurn;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    // Number of moves the model had made since reset() or loadFen()
+    public int getPly() {
+        return ply;
+    }
+
+    // The move that led here, Move.NONE after reset() or loadFen()
+    public int getLastMove() {
+        return lastMove;
+    }
+
+    public long positionKey() {
+        return key;
+    }
+
+    public String toFen() {
+        return new ChessModel(this).toFen();
+    }
+
+    long bitboard(int piece) {
+        return bitboards[piece];
+    }
+
+    int getCastlingRights() {
+        return castlingRights;
+    }
+
+    int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+}
@@ -0,0 +1,10 @@
+package com.goldthumb.chess;
+
+public enum Rank {
+    KING,
+    QUEEN,
+    BISHOP,
+    ROOK,
+    KNIGHT,
+    PAWN;
+}
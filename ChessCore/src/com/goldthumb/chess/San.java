@@ -0,0 +1,116 @@
+package com.goldthumb.chess;
+
+// Standard algebraic notation (Nf3, exd5, e8=Q+, O-O-O) decoded against the legal
+// moves of a position. Long algebraic forms such as Ng1-f3 are accepted too.
+final class San {
+    static final int AMBIGUOUS = -1;
+
+    // Indexed like Rank: KING, QUEEN, BISHOP, ROOK, KNIGHT
+    private static final String PIECE_LETTERS = "KQBRN";
+    private static final Rank[] RANKS = Rank.values();
+
+    private San() {
+    }
+
+    // The legal move text[start, end) names, Move.NONE if none does, or AMBIGUOUS.
+    // legal is scratch space for the move generator.
+    static int parse(ChessModel model, CharSequence text, int start, int end, int[] legal) {
+        while (end > start && "+#!?".indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        if (end - start < 2) {
+            return Move.NONE;
+        }
+        int count = model.generateLegalMoves(legal);
+
+        int castlingCol = castlingTarget(text, start, end);
+        if (castlingCol >= 0) {
+            for (int i = 0; i < count; i++) {
+                int from = Move.from(legal[i]);
+                int to = Move.to(legal[i]);
+                if (Bitboards.rankOf(model.pieceIndexAt(from)) == Rank.KING
+                        && Math.abs(Bitboards.col(to) - Bitboards.col(from)) == 2 && Bitboards.col(to) == castlingCol) {
+                    return legal[i];
+                }
+            }
+            return Move.NONE;
+        }
+
+        Rank rank = Rank.PAWN;
+        int i = start;
+        int letter = PIECE_LETTERS.indexOf(text.charAt(i));
+        if (letter >= 0) {
+            rank = RANKS[letter];
+            i++;
+        }
+
+        Rank promotion = null;
+        if (rank == Rank.PAWN) {
+            int promotionLetter = PIECE_LETTERS.indexOf(Character.toUpperCase(text.charAt(end - 1)));
+            if (promotionLetter > 0 && end - i >= 3) {
+                promotion = RANKS[promotionLetter];
+                end--;
+                if (text.charAt(end - 1) == '=') {
+                    end--;
+                }
+            }
+        }
+
+        if (end - i < 2) {
+            return Move.NONE;
+        }
+        int toCol = text.charAt(end - 2) - 'a';
+        int toRow = text.charAt(end - 1) - '1';
+        if (!Bitboards.onBoard(toCol, toRow)) {
+            return Move.NONE;
+        }
+        int to = Bitboards.square(toCol, toRow);
+
+        int fromCol = -1;
+        int fromRow = -1;
+        for (int j = i; j < end - 2; j++) {
+            char c = text.charAt(j);
+            if (c >= 'a' && c <= 'h') {
+                fromCol = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRow = c - '1';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                return Move.NONE;
+            }
+        }
+
+        int found = Move.NONE;
+        for (int j = 0; j < count; j++) {
+            int move = legal[j];
+            int from = Move.from(move);
+            if (Move.to(move) != to
+                    || Bitboards.rankOf(model.pieceIndexAt(from)) != rank
+                    || (fromCol >= 0 && Bitboards.col(from) != fromCol)
+                    || (fromRow >= 0 && Bitboards.row(from) != fromRow)) {
+                continue;
+            }
+            if (Move.isPromotion(move) ? Move.promotion(move) != promotion : promotion != null) {
+                continue;
+            }
+            if (found != Move.NONE) {
+                return AMBIGUOUS;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    // 6 for O-O, 2 for O-O-O (letter O or digit zero), -1 otherwise
+    private static int castlingTarget(CharSequence text, int start, int end) {
+        int castles = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == 'O' || c == '0') {
+                castles++;
+            } else if (c != '-') {
+                return -1;
+            }
+        }
+        return castles == 2 ? 6 : castles == 3 ? 2 : -1;
+    }
+}
@@ -0,0 +1,207 @@
+package com.goldthumb.chess;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Computer opponent. search() blocks the calling thread, so callers on the
+// Swing EDT should hand it to a background executor.
+//
+// With more than one thread the search runs Lazy SMP: the calling thread is
+// the main searcher and the helpers search the same position on their own
+// copies, cooperating only through the shared transposition table.
+//
+// Positions found in the opening book, if one is set, are answered from it without searching.
+//
+//   SearchEngine [--hash MB] [--threads N] [--book file.bin] [--bitbases dir]
+//                [--depth N | --nodes N | --time ms] [fen]
+public final class SearchEngine {
+    public static final int DEFAULT_HASH_MB = 16;
+
+    private final TranspositionTable table;
+    private final ExecutorService helpers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "search-helper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile int threads = 1;
+    private volatile PolyglotBook book;
+    private volatile PolyglotBook.Selection bookSelection = PolyglotBook.Selection.WEIGHTED_RANDOM;
+    private volatile Bitbases bitbases;
+    // Scratch space for book lookups, guarded by bookMoves
+    private final int[] bookMoves = new int[PolyglotBook.MAX_BOOK_MOVES];
+    private final int[] bookWeights = new int[PolyglotBook.MAX_BOOK_MOVES];
+    private volatile List<Searcher> current = List.of();
+
+    public SearchEngine() {
+        this(DEFAULT_HASH_MB);
+    }
+
+    public SearchEngine(int hashMb) {
+        this(hashMb, 1);
+    }
+
+    public SearchEngine(int hashMb, int threads) {
+        this.table = new TranspositionTable(hashMb);
+        setThreads(threads);
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Search needs at least one thread: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    // Pass null to search every position
+    public void setBook(PolyglotBook book, PolyglotBook.Selection selection) {
+        this.book = book;
+        this.bookSelection = selection;
+    }
+
+    // Pass null to search endgames without bitbase results
+    public void setBitbases(Bitbases bitbases) {
+        this.bitbases = bitbases;
+    }
+
+    // Returns the result of the thread that completed the deepest iteration,
+    // with the nodes of all threads added up
+    public SearchResult search(ChessModel position, SearchLimits limits) {
+        PolyglotBook currentBook = book;
+        if (currentBook != null) {
+            int move;
+            synchronized (bookMoves) {
+                move = currentBook.selectMove(position, bookSelection, bookMoves, bookWeights);
+            }
+            if (move != Move.NONE) {
+                return new SearchResult(move, 0, 0, 0, 0);
+            }
+        }
+
+        table.newSearch();
+        Bitbases currentBitbases = bitbases;
+        List<Searcher> searchers = new ArrayList<>(threads);
+        for (int id = 0; id < threads; id++) {
+            searchers.add(new Searcher(new ChessModel(position), table, currentBitbases, id));
+        }
+        current = searchers;
+
+        List<Future<SearchResult>> futures = new ArrayList<>(threads - 1);
+        try {
+            for (int id = 1; id < searchers.size(); id++) {
+                Searcher helper = searchers.get(id);
+                futures.add(helpers.submit(() -> helper.iterativeDeepening(limits)));
+            }
+            SearchResult main = searchers.get(0).iterativeDeepening(limits);
+            SearchResult best = main;
+            long nodes = main.getNodes();
+            for (int id = 1; id < searchers.size(); id++) {
+                searchers.get(id).stop();
+            }
+            for (Future<SearchResult> future : futures) {
+                SearchResult result = join(future);
+                nodes += result.getNodes();
+                if (result.getDepth() > best.getDepth() && result.getBestMove() != Move.NONE) {
+                    best = result;
+                }
+            }
+            return new SearchResult(best.getBestMove(), best.getScore(), best.getDepth(), nodes,
+                    main.getElapsedMillis());
+        } finally {
+            for (Searcher searcher : searchers) {
+                searcher.stop();
+            }
+            current = List.of();
+        }
+    }
+
+    public void stop() {
+        for (Searcher searcher : current) {
+            searcher.stop();
+        }
+    }
+
+    private static SearchResult join(Future<SearchResult> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search helper failed", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        SearchLimits limits = SearchLimits.time(5000);
+        int hashMb = DEFAULT_HASH_MB;
+        int threads = 1;
+        String bookFile = null;
+        String bitbaseDir = null;
+        StringBuilder fen = new StringBuilder();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--hash":
+                    hashMb = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--book":
+                    bookFile = args[++i];
+                    break;
+                case "--bitbases":
+                    bitbaseDir = args[++i];
+                    break;
+                case "--depth":
+                    limits = SearchLimits.depth(Integer.parseInt(args[++i]));
+                    break;
+                case "--nodes":
+                    limits = SearchLimits.nodes(Long.parseLong(args[++i]));
+                    break;
+                case "--time":
+                    limits = SearchLimits.time(Long.parseLong(args[++i]));
+                    break;
+                default:
+                    fen.append(args[i]).append(' ');
+            }
+        }
+
+        ChessModel model = new ChessModel();
+        if (fen.length() > 0) {
+            model.loadFen(fen.toString());
+        } else {
+            model.reset();
+        }
+        SearchEngine engine = new SearchEngine(hashMb, threads);
+        if (bookFile != null) {
+            engine.setBook(PolyglotBook.open(Paths.get(bookFile)), PolyglotBook.Selection.BEST);
+        }
+        if (bitbaseDir != null) {
+            engine.setBitbases(Bitbases.openOrGenerate(Paths.get(bitbaseDir)));
+        }
+        System.out.println(engine.search(model, limits));
+        System.out.println(engine.getTranspositionTable());
+    }
+}
@@ -0,0 +1,50 @@
+package com.goldthumb.chess;
+
+public final class SearchResult {
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long elapsedMillis;
+
+    SearchResult(int bestMove, int score, int depth, long nodes, long elapsedMillis) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    // Move.NONE when the side to move has no legal moves
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    // Centipawns from the side to move's point of view
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getNodesPerSecond() {
+        return nodes * 1000 / Math.max(1, elapsedMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "bestmove " + (bestMove == Move.NONE ? "(none)" : Move.toString(bestMove))
+                + " score " + score + " depth " + depth + " nodes " + nodes
+                + " time " + elapsedMillis + " nps " + getNodesPerSecond();
+    }
+}
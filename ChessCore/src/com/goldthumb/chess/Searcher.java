@@ -0,0 +1,426 @@
+package com.goldthumb.chess;
+
+// Iterative deepening negamax alpha-beta over a private ChessModel copy,
+// driven entirely by makeMove/unmakeMove so no positions are allocated per node.
+// Searcher 0 is the main thread; helpers (id > 0) share its transposition table
+// and skip depths and reorder root moves so they do not all search the same tree.
+final class Searcher {
+    static final int INFINITY = 32000;
+    static final int MATE = 31000;
+    static final int MAX_PLY = 128;
+    // Bitbase wins score below any mate but above any material balance
+    static final int KNOWN_WIN = 20000;
+
+    private static final int ASPIRATION_WINDOW = 40;
+    private static final int CHECK_INTERVAL = 2047;
+
+    // Indexed by Rank ordinal: KING, QUEEN, BISHOP, ROOK, KNIGHT, PAWN
+    private static final int[] ORDER_VALUE = {1000, 900, 330, 500, 320, 100};
+
+    // Helper depth staggering: helper i searches depths in runs of SKIP_SIZE[i],
+    // alternately searching and skipping, shifted by SKIP_PHASE[i]
+    private static final int[] SKIP_SIZE = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+    private static final int[] SKIP_PHASE = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+
+    private final ChessModel board;
+    private final TranspositionTable table;
+    private final Bitbases bitbases;
+    private final int id;
+    private final int[] rootMoves = new int[ChessModel.MAX_MOVES];
+    private final int[][] moves = new int[MAX_PLY][ChessModel.MAX_MOVES];
+    private final int[][] scores = new int[MAX_PLY][ChessModel.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[64][64];
+
+    private int rootCount;
+    private boolean probeBitbases;
+    private int rootBestMove;
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    private volatile boolean stopped;
+
+    Searcher(ChessModel board, TranspositionTable table, Bitbases bitbases, int id) {
+        this.board = board;
+        this.table = table;
+        this.bitbases = bitbases;
+        this.id = id;
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    long getNodes() {
+        return nodes;
+    }
+
+    SearchResult iterativeDeepening(SearchLimits limits) {
+        long start = System.nanoTime();
+        nodeLimit = limits.getMaxNodes();
+        deadline = limits.getMaxTimeMillis() == Long.MAX_VALUE
+                ? Long.MAX_VALUE
+                : start + limits.getMaxTimeMillis() * 1_000_000;
+
+        rootCount = board.generateLegalMoves(rootMoves);
+        if (rootCount == 0) {
+            int score = board.isKingInCheck(board.getPlayerInTurn()) ? -MATE : 0;
+            return new SearchResult(Move.NONE, score, 0, 0, elapsedMillis(start));
+        }
+
+        // Inside a bitbase ending only moves that keep the best result are searched, and the
+        // search itself finds the mate; otherwise bitbase endings reached in the tree are scored directly
+        probeBitbases = bitbases != null && bitbases.probe(board) == Bitbases.UNKNOWN;
+        if (bitbases != null && !probeBitbases) {
+            keepBestBitbaseMoves();
+        }
+        if (id > 0) {
+            rotateRootMoves(id % rootCount);
+        }
+
+        rootBestMove = rootMoves[0];
+        int bestMove = rootBestMove;
+        int bestScore = 0;
+        int completedDepth = 0;
+        for (int depth = 1; depth <= limits.getMaxDepth() && !stopped; depth++) {
+            if (skipDepth(depth)) {
+                continue;
+            }
+            int window = ASPIRATION_WINDOW;
+            int alpha = -INFINITY;
+            int beta = INFINITY;
+            if (depth >= 4) {
+                alpha = Math.max(-INFINITY, bestScore - window);
+                beta = Math.min(INFINITY, bestScore + window);
+            }
+
+            int score;
+            while (true) {
+                score = searchRoot(depth, alpha, beta);
+                if (stopped) {
+                    break;
+                }
+                if (score <= alpha) {
+                    alpha = Math.max(-INFINITY, score - window);
+                } else if (score >= beta) {
+                    beta = Math.min(INFINITY, score + window);
+                } else {
+                    break;
+                }
+                window *= 2;
+            }
+            if (stopped) {
+                break;
+            }
+
+            bestMove = rootBestMove;
+            bestScore = score;
+            completedDepth = depth;
+
+            if (rootCount == 1 || Math.abs(score) >= MATE - depth) {
+                break;
+            }
+            // The next iteration would not finish in the remaining time
+            if (deadline != Long.MAX_VALUE && System.nanoTime() > start + (deadline - start) / 2) {
+                break;
+            }
+        }
+        return new SearchResult(bestMove, bestScore, completedDepth, nodes, elapsedMillis(start));
+    }
+
+    private boolean skipDepth(int depth) {
+        if (id == 0) {
+            return false;
+        }
+        int helper = (id - 1) % SKIP_SIZE.length;
+        return ((depth + SKIP_PHASE[helper]) / SKIP_SIZE[helper]) % 2 != 0;
+    }
+
+    private void keepBestBitbaseMoves() {
+        int[] results = new int[rootCount];
+        int best = Bitbases.LOSS;
+        for (int i = 0; i < rootCount; i++) {
+            board.makeMove(rootMoves[i]);
+            int result = bitbases.probe(board);
+            board.unmakeMove();
+            results[i] = result == Bitbases.UNKNOWN ? Bitbases.DRAW : -result;
+            best = Math.max(best, results[i]);
+        }
+        int kept = 0;
+        for (int i = 0; i < rootCount; i++) {
+            if (results[i] == best) {
+                rootMoves[kept++] = rootMoves[i];
+            }
+        }
+        rootCount = kept;
+    }
+
+    private void rotateRootMoves(int distance) {
+        int[] rotated = new int[rootCount];
+        for (int i = 0; i < rootCount; i++) {
+            rotated[i] = rootMoves[(i + distance) % rootCount];
+        }
+        System.arraycopy(rotated, 0, rootMoves, 0, rootCount);
+    }
+
+    private int searchRoot(int depth, int alpha, int beta) {
+        int best = -INFINITY;
+        for (int i = 0; i < rootCount; i++) {
+            int move = rootMoves[i];
+            board.makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -search(depth - 1, -beta, -alpha, 1);
+            } else {
+                score = -search(depth - 1, -alpha - 1, -alpha, 1);
+                if (score > alpha && score < beta) {
+                    score = -search(depth - 1, -beta, -alpha, 1);
+                }
+            }
+            board.unmakeMove();
+            if (stopped) {
+                return best;
+            }
+
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    rootBestMove = move;
+                    // Keep the best move first for the next iteration
+                    System.arraycopy(rootMoves, 0, rootMoves, 1, i);
+                    rootMoves[0] = move;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private int search(int depth, int alpha, int beta, int ply) {
+        if (board.getHalfmoveClock() >= 100 || board.repetitionCount() > 1) {
+            return 0;
+        }
+
+        if (probeBitbases) {
+            int result = bitbases.probe(board);
+            if (result != Bitbases.UNKNOWN) {
+                return result == Bitbases.DRAW ? 0 : result * KNOWN_WIN + board.evaluate();
+            }
+        }
+
+        boolean inCheck = board.isKingInCheck(board.getPlayerInTurn());
+        int searchDepth = inCheck ? depth + 1 : depth;
+        if (searchDepth <= 0) {
+            return quiescence(alpha, beta, ply);
+        }
+
+        long key = board.positionKey();
+        long entry = table.probe(key);
+        int hashMove = Move.NONE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = scoreFromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || bound == TranspositionTable.BOUND_LOWER && score >= beta
+                        || bound == TranspositionTable.BOUND_UPPER && score <= alpha) {
+                    return score;
+                }
+            }
+        }
+
+        countNode();
+        if (stopped) {
+            return 0;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return board.evaluate();
+        }
+
+        int[] plyMoves = moves[ply];
+        int count = board.generateLegalMoves(plyMoves);
+        if (count == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(ply, count, hashMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            boolean quiet = !board.isCapture(move) && !Move.isPromotion(move);
+            board.makeMove(move);
+            int score;
+            if (i == 0) {
+                score = -search(searchDepth - 1, -beta, -alpha, ply + 1);
+            } else {
+                int reduction = searchDepth >= 3 && i >= 4 && quiet && !inCheck ? 1 : 0;
+                score = -search(searchDepth - 1 - reduction, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && reduction > 0) {
+                    score = -search(searchDepth - 1, -alpha - 1, -alpha, ply + 1);
+                }
+                if (score > alpha && score < beta) {
+                    score = -search(searchDepth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            board.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        if (quiet) {
+                            rememberQuietCutoff(move, searchDepth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.BOUND_LOWER
+                : best > originalAlpha ? TranspositionTable.BOUND_EXACT
+                : TranspositionTable.BOUND_UPPER;
+        table.store(key, bestMove, scoreToTable(best, ply), depth, bound);
+        return best;
+    }
+
+    private int quiescence(int alpha, int beta, int ply) {
+        countNode();
+        if (stopped) {
+            return 0;
+        }
+
+        int standPat = board.evaluate();
+        if (standPat >= beta || ply >= MAX_PLY - 1) {
+            return standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+
+        int count = board.generateLegalCaptures(moves[ply]);
+        scoreMoves(ply, count, Move.NONE);
+        for (int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            board.makeMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            board.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    private void countNode() {
+        if ((++nodes & CHECK_INTERVAL) == 0 && (nodes >= nodeLimit || System.nanoTime() >= deadline)) {
+            stopped = true;
+        }
+    }
+
+    // Hash move first, then captures by most valuable victim / least valuable attacker,
+    // promotions, killers and history
+    private void scoreMoves(int ply, int count, int hashMove) {
+        int[] plyMoves = moves[ply];
+        int[] plyScores = scores[ply];
+        for (int i = 0; i < count; i++) {
+            int move = plyMoves[i];
+            int from = Move.from(move);
+            int to = Move.to(move);
+            int attacker = board.pieceIndexAt(from) % 6;
+            int victim = board.pieceIndexAt(to);
+            if (move == hashMove) {
+                plyScores[i] = 2_000_000;
+            } else if (victim != Bitboards.EMPTY) {
+                plyScores[i] = 1_000_000 + ORDER_VALUE[victim % 6] * 16 - ORDER_VALUE[attacker] / 16;
+            } else if (board.isCapture(move)) {
+                plyScores[i] = 1_000_000 + ORDER_VALUE[Rank.PAWN.ordinal()] * 16;
+            } else if (Move.isPromotion(move)) {
+                plyScores[i] = 900_000 + ORDER_VALUE[Move.promotion(move).ordinal()];
+            } else if (move == killers[ply][0]) {
+                plyScores[i] = 800_000;
+            } else if (move == killers[ply][1]) {
+                plyScores[i] = 799_999;
+            } else {
+                plyScores[i] = history[from][to];
+            }
+        }
+    }
+
+    // Selection sort step: swaps the best remaining move into slot i
+    private int pickMove(int ply, int i, int count) {
+        int[] plyMoves = moves[ply];
+        int[] plyScores = scores[ply];
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (plyScores[j] > plyScores[best]) {
+                best = j;
+            }
+        }
+        int move = plyMoves[best];
+        plyMoves[best] = plyMoves[i];
+        plyMoves[i] = move;
+        int score = plyScores[best];
+        plyScores[best] = plyScores[i];
+        plyScores[i] = score;
+        return move;
+    }
+
+    private void rememberQuietCutoff(int move, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] fromHistory = history[Move.from(move)];
+        fromHistory[Move.to(move)] += depth * depth;
+        if (fromHistory[Move.to(move)] > 500_000) {
+            for (int[] row : history) {
+                for (int to = 0; to < 64; to++) {
+                    row[to] /= 2;
+                }
+            }
+        }
+    }
+
+    // Mate scores are stored relative to the node so they stay valid at any ply
+    private static int scoreToTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,43 @@
+package com.goldthumb.chess;
+
+// Scanning helpers for the FEN and EPD parsers. They work on CharSequence views such
+// as LineReader's, so nothing is allocated per field.
+final class Text {
+    private Text() {
+    }
+
+    static boolean isSpace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    static int skipSpaces(CharSequence text, int i) {
+        while (i < text.length() && isSpace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // Only ASCII digits, which parseNumber can read
+    static int skipDigits(CharSequence text, int i) {
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    // The digits in [start, end), usually found with skipDigits
+    static long parseNumber(CharSequence text, int start, int end, long max) {
+        if (start >= end) {
+            throw new IllegalArgumentException("Number expected at " + start + ": " + text);
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (value > (max - digit) / 10) {
+                throw new IllegalArgumentException("Number above " + max + " at " + start + ": " + text);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
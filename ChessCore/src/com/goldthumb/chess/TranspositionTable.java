@@ -0,0 +1,167 @@
+package com.goldthumb.chess;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-size hash table of search results shared by any number of search
+// threads without locks. Every entry is two longs, (key ^ data) and data;
+// a torn or overwritten entry fails the XOR check and reads as a miss.
+// Entries live in four-slot buckets of one cache line each.
+public final class TranspositionTable {
+    public static final int BOUND_UPPER = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_EXACT = 3;
+
+    private static final int BUCKET_SLOTS = 4;
+    private static final int BUCKET_LONGS = BUCKET_SLOTS * 2;
+    private static final int BUCKET_BYTES = BUCKET_LONGS * Long.BYTES;
+    private static final int AGE_MASK = 63;
+
+    // data layout: move 0-15, score 16-31, depth 32-39, bound 40-41, age 42-47
+    private static final int SCORE_SHIFT = 16;
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int AGE_SHIFT = 42;
+
+    private final long[] table;
+    private final int bucketMask;
+    private final int sizeMb;
+    private int age;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    public TranspositionTable(int sizeMb) {
+        if (sizeMb < 1) {
+            throw new IllegalArgumentException("Transposition table size must be at least 1 MB: " + sizeMb);
+        }
+        long buckets = Long.highestOneBit((long) sizeMb * 1024 * 1024 / BUCKET_BYTES);
+        buckets = Math.min(buckets, Integer.highestOneBit(Integer.MAX_VALUE / BUCKET_LONGS));
+        this.table = new long[(int) buckets * BUCKET_LONGS];
+        this.bucketMask = (int) buckets - 1;
+        this.sizeMb = sizeMb;
+    }
+
+    // Starts a new search generation; entries from older generations are replaced first
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        age = 0;
+        probes.reset();
+        hits.reset();
+        stores.reset();
+    }
+
+    // Returns the packed entry for key, or 0 when there is none
+    public long probe(long key) {
+        probes.increment();
+        int base = bucketIndex(key);
+        for (int slot = base; slot < base + BUCKET_LONGS; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != 0) {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int base = bucketIndex(key);
+        int target = base;
+        int targetWorth = Integer.MAX_VALUE;
+        for (int slot = base; slot < base + BUCKET_LONGS; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key || data == 0) {
+                if (move == Move.NONE && data != 0) {
+                    move = move(data);
+                }
+                target = slot;
+                break;
+            }
+            // Depth-preferred, but every generation of age costs an entry eight plies
+            int worth = depth(data) - 8 * ((age - age(data)) & AGE_MASK);
+            if (worth < targetWorth) {
+                targetWorth = worth;
+                target = slot;
+            }
+        }
+
+        long data = (move & 0xFFFFL)
+                | (score & 0xFFFFL) << SCORE_SHIFT
+                | (long) (Math.max(0, Math.min(depth, 255))) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) age << AGE_SHIFT;
+        table[target] = key ^ data;
+        table[target + 1] = data;
+        stores.increment();
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 3;
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key >>> 32) & bucketMask) * BUCKET_LONGS;
+    }
+
+    public int getSizeMb() {
+        return sizeMb;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    public double getHitRate() {
+        long total = probes.sum();
+        return total == 0 ? 0.0 : (double) hits.sum() / total;
+    }
+
+    // Permille of sampled slots holding entries from the current search
+    public int hashfull() {
+        int sampled = Math.min(table.length / 2, 1000);
+        int used = 0;
+        for (int i = 0; i < sampled; i++) {
+            long data = table[2 * i + 1];
+            if (data != 0 && age(data) == age) {
+                used++;
+            }
+        }
+        return used * 1000 / sampled;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hash %d MB, probes %d, hits %d (%.1f%%), stores %d, full %d permille",
+                sizeMb, getProbes(), getHits(), getHitRate() * 100, getStores(), hashfull());
+    }
+}
@@ -0,0 +1,5 @@
+// Rules, board, move generation, search and the game file formats.
+// Needs nothing beyond java.base, so headless tools and the server start without AWT.
+module com.goldthumb.chess.core {
+	exports com.goldthumb.chess;
+}
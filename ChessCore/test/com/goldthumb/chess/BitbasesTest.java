@@ -0,0 +1,55 @@
+package com.goldthumb.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class BitbasesTest {
+    @TempDir
+    static Path dir;
+
+    private static Bitbases bitbases;
+
+    @BeforeAll
+    static void generate() throws IOException {
+        bitbases = Bitbases.openOrGenerate(dir);
+    }
+
+    // Results are for the side to move
+    @ParameterizedTest
+    @CsvSource({
+            // KPK: a pawn its king escorts wins, a rook pawn or a blocked pawn draws
+            "4k3/8/4K3/4P3/8/8/8/8 w - - 0 1, 1",
+            "4k3/8/4K3/4P3/8/8/8/8 b - - 0 1, -1",
+            "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1, 1",
+            "4k3/8/4P3/4K3/8/8/8/8 w - - 0 1, 0",
+            "k7/8/8/K7/8/P7/8/8 w - - 0 1, 0",
+            // Black's pawns are looked up on the mirrored board
+            "8/8/8/8/4p3/4k3/8/4K3 w - - 0 1, -1",
+            "8/8/8/8/4k3/4p3/8/4K3 b - - 0 1, 0",
+            // The pawn is lost
+            "8/8/8/8/8/8/3kP3/7K b - - 0 1, 0",
+            // KRK: a win wherever the rook is safe
+            "4k3/8/8/8/8/8/8/R3K3 w - - 0 1, 1",
+            "4k3/8/8/8/8/8/8/R3K3 b - - 0 1, -1",
+            "8/8/8/8/8/8/8/k1r4K w - - 0 1, -1",
+            // The rook hangs
+            "8/8/8/8/8/8/1k6/R6K b - - 0 1, 0",
+            // Stalemate
+            "k7/1R6/1K6/8/8/8/8/8 b - - 0 1, 0",
+            // Too much material or a lone minor piece
+            "4k3/4p3/8/8/8/8/4P3/4K3 w - - 0 1, 2",
+            "4k3/8/8/8/8/8/8/2B1K3 w - - 0 1, 0"
+    })
+    void probesKnownResults(String fen, int result) {
+        ChessModel model = new ChessModel();
+        model.loadFen(fen);
+        assertEquals(result, bitbases.probe(model), fen);
+    }
+}
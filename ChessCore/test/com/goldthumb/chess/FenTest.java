@@ -0,0 +1,95 @@
+package com.goldthumb.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class FenTest {
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 11 40",
+            "4k3/8/8/8/8/8/8/4K3 w - - 99 120"
+    })
+    void roundTrips(String fen) {
+        ChessModel model = new ChessModel();
+        model.loadFen(fen);
+        assertEquals(fen, model.toFen());
+        assertEquals(fen, model.getStartFen());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+            "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkx - 0 1",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 99999999999",
+            "8/8/8/8/8/8/8/4K3 w - - 0 1",
+            "4k2P/8/8/8/8/8/8/4K3 w - - 0 1",
+            "4k3/8/8/8/8/8/8/p3K3 b - - 0 1",
+            // En passant squares no pawn has just passed
+            "4k3/8/8/8/8/8/3P4/4K3 w - e3 0 1",
+            "4k3/8/8/3pP3/8/8/8/4K3 w - d5 0 1",
+            "4k3/8/3p4/3pP3/8/8/8/4K3 w - d6 0 1",
+            "4k3/3p4/8/4P3/8/8/8/4K3 w - d6 0 1",
+            "4k3/8/8/8/3pP3/8/8/4K3 b - e6 0 1",
+            "4k3/8/8/8/3pP3/8/8/4K3 b - i3 0 1",
+            // The side that just moved left its king in check
+            "4k3/8/8/8/8/8/8/4R1K1 w - - 0 1",
+            "4k3/8/8/8/8/8/8/4K2r b - - 0 1"
+    })
+    void rejectsInvalidFen(String fen) {
+        assertThrows(IllegalArgumentException.class, () -> new ChessModel().loadFen(fen));
+    }
+
+    @Test
+    void keepsThePositionWhenAFenIsInvalid() {
+        ChessModel model = new ChessModel();
+        model.reset();
+        model.makeMove(Move.of(Bitboards.square(4, 1), Bitboards.square(4, 3)));
+        String fen = model.toFen();
+        long key = model.positionKey();
+        assertThrows(IllegalArgumentException.class, () -> model.loadFen("4k3/8/8/8/8/8/3P4/4K3 w - e3 0 1"));
+        assertEquals(fen, model.toFen());
+        assertEquals(key, model.positionKey());
+        assertEquals(1, model.getPly());
+        model.unmakeMove();
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", model.toFen());
+    }
+
+    @Test
+    void dropsAnEnPassantSquareNoPawnCanCapture() {
+        ChessModel model = new ChessModel();
+        model.loadFen("4k3/8/8/4P3/8/8/8/4K3 b - - 0 1");
+        model.loadFen("4k3/3p4/8/4P3/8/8/8/4K3 b - - 0 1");
+        model.loadFen("4k3/8/8/8/3P4/8/8/4K3 w - - 0 1");
+        model.loadFen("4k3/8/8/3p4/8/8/8/4K3 w - d6 0 1");
+        assertEquals("4k3/8/8/3p4/8/8/8/4K3 w - - 0 1", model.toFen());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"
+    })
+    void makeAndUnmakeRestoreThePosition(String fen) {
+        ChessModel model = new ChessModel();
+        model.loadFen(fen);
+        long key = model.positionKey();
+        int[] moves = new int[ChessModel.MAX_MOVES];
+        int count = model.generateLegalMoves(moves);
+        for (int i = 0; i < count; i++) {
+            model.makeMove(moves[i]);
+            model.unmakeMove();
+            assertEquals(fen, model.toFen(), Move.toString(moves[i]));
+            assertEquals(key, model.positionKey(), Move.toString(moves[i]));
+        }
+    }
+}
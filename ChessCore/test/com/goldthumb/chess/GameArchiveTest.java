@@ -0,0 +1,151 @@
+package com.goldthumb.chess;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GameArchiveTest {
+    private static final String ENDGAME = "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1";
+
+    @TempDir
+    Path dir;
+
+    private static int[] moves(ChessModel model) {
+        int[] moves = new int[model.getPly()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = model.moveAt(i);
+        }
+        return moves;
+    }
+
+    private static ChessModel play(String fen, int plies) {
+        ChessModel model = new ChessModel();
+        if (fen == null) {
+            model.reset();
+        } else {
+            model.loadFen(fen);
+        }
+        int[] legal = new int[ChessModel.MAX_MOVES];
+        for (int i = 0; i < plies && model.generateLegalMoves(legal) > 0; i++) {
+            model.makeMove(legal[0]);
+        }
+        return model;
+    }
+
+    @Test
+    void roundTrips() throws IOException {
+        Path file = dir.resolve("games.cga");
+        ChessModel first = play(null, 40);
+        ChessModel second = play(ENDGAME, 7);
+        try (GameArchiveWriter writer = GameArchiveWriter.open(file)) {
+            writer.append("Anna", "Bảo", GameResult.WHITE_WINS, first);
+            writer.append("Chi", "Dũng", GameResult.DRAW, second);
+        }
+
+        GameArchive archive = GameArchive.open(file);
+        assertEquals(2, archive.size());
+        assertEquals("Anna", archive.getWhite(0));
+        assertEquals("Bảo", archive.getBlack(0));
+        assertEquals(GameResult.WHITE_WINS, archive.getResult(0));
+        assertNull(archive.getStartFen(0));
+        assertEquals(40, archive.getPlyCount(0));
+        assertEquals(first.toFen(), archive.positionAt(0, 40).toFen());
+
+        assertEquals("Dũng", archive.getBlack(1));
+        assertEquals(GameResult.DRAW, archive.getResult(1));
+        assertEquals(ENDGAME, archive.getStartFen(1));
+        int[] played = moves(second);
+        int[] read = new int[archive.getPlyCount(1)];
+        for (int ply = 0; ply < read.length; ply++) {
+            read[ply] = archive.getMove(1, ply);
+        }
+        assertArrayEquals(played, read);
+        assertEquals(second.toFen(), archive.positionAt(1, played.length).toFen());
+        assertThrows(IndexOutOfBoundsException.class, () -> archive.getMove(1, played.length));
+    }
+
+    @Test
+    void appendsToAnExistingArchive() throws IOException {
+        Path file = dir.resolve("games.cga");
+        for (int i = 0; i < 3; i++) {
+            try (GameArchiveWriter writer = GameArchiveWriter.open(file)) {
+                writer.append("White " + i, "Black", GameResult.UNKNOWN, play(null, i));
+            }
+        }
+        GameArchive archive = GameArchive.open(file);
+        assertEquals(3, archive.size());
+        assertEquals("White 2", archive.getWhite(2));
+        assertEquals(2, archive.getPlyCount(2));
+    }
+
+    @Test
+    void dropsARecordCutShort() throws IOException {
+        Path file = dir.resolve("games.cga");
+        try (GameArchiveWriter writer = GameArchiveWriter.open(file)) {
+            writer.append("A", "B", GameResult.DRAW, play(null, 10));
+            writer.append("C", "D", GameResult.DRAW, play(null, 20));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+
+        GameArchive archive = GameArchive.open(file);
+        assertEquals(1, archive.size());
+        assertEquals("A", archive.getWhite(0));
+        assertEquals(10, archive.getPlyCount(0));
+    }
+
+    @Test
+    void rejectsAFileWithoutTheMagic() throws IOException {
+        Path file = dir.resolve("games.cga");
+        Files.write(file, new byte[] {'P', 'G', 'N', ' ', 0, 0, 0, 0});
+        assertThrows(IOException.class, () -> GameArchive.open(file));
+    }
+
+    @Test
+    void rejectsABadResult() throws IOException {
+        Path file = dir.resolve("games.cga");
+        try (GameArchiveWriter writer = GameArchiveWriter.open(file)) {
+            writer.append("A", "B", GameResult.DRAW, play(null, 2));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        // After the magic and the record length
+        bytes[GameArchive.MAGIC.length + 4] = 9;
+        Files.write(file, bytes);
+
+        GameArchive archive = GameArchive.open(file);
+        assertThrows(IOException.class, () -> archive.getResult(0));
+    }
+
+    @Test
+    void rejectsAnIllegalMove() throws IOException {
+        Path file = dir.resolve("games.cga");
+        try (GameArchiveWriter writer = GameArchiveWriter.open(file)) {
+            writer.append("A", "B", GameResult.DRAW, null, new int[] {
+                    Move.of(Bitboards.square(4, 1), Bitboards.square(4, 3)),
+                    Move.of(Bitboards.square(4, 6), Bitboards.square(4, 4)),
+                    Move.of(Bitboards.square(4, 3), Bitboards.square(4, 4))}, 3);
+        }
+        GameArchive archive = GameArchive.open(file);
+        assertEquals("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2", archive.positionAt(0, 2).toFen());
+        assertThrows(IOException.class, () -> archive.positionAt(0, 3));
+    }
+
+    @Test
+    void rejectsABadStartPosition() throws IOException {
+        Path file = dir.resolve("games.cga");
+        try (GameArchiveWriter writer = GameArchiveWriter.open(file)) {
+            writer.append("A", "B", GameResult.DRAW, "8/8/8/8/8/8/8/4K3 w - - 0 1", new int[0], 0);
+        }
+        GameArchive archive = GameArchive.open(file);
+        assertThrows(IOException.class, () -> archive.positionAt(0, 0));
+    }
+}
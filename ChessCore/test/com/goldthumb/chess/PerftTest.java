@@ -0,0 +1,85 @@
+package com.goldthumb.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class PerftTest {
+    private static final int MAX_DEPTH = 3;
+
+    static List<String> suite() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                PerftTest.class.getResourceAsStream("/perft/standard.epd"), StandardCharsets.US_ASCII))) {
+            return reader.lines().filter(line -> !line.isBlank()).collect(Collectors.toList());
+        }
+    }
+
+    // Each line is a FEN followed by operations like ";D1 20 ;D2 400"
+    @ParameterizedTest
+    @MethodSource("suite")
+    void countsTheSuite(String line) {
+        String[] fields = line.split(";");
+        ChessModel model = new ChessModel();
+        model.loadFen(fields[0].trim());
+        for (int i = 1; i < fields.length; i++) {
+            String[] operation = fields[i].trim().split(" ");
+            int depth = Integer.parseInt(operation[0].substring(1));
+            if (depth <= MAX_DEPTH) {
+                assertEquals(Long.parseLong(operation[1]), Perft.perft(model, depth), fields[0] + " depth " + depth);
+            }
+        }
+    }
+
+    @Test
+    void dividesOnAPool() {
+        ChessModel model = new ChessModel();
+        model.loadFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertEquals(97862, Perft.divide(model, 3, pool, null));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Every move and its undo over two plies restores the key and the evaluation, and the
+    // key after each move is the one the position gets when loaded from scratch
+    @ParameterizedTest
+    @MethodSource("suite")
+    void makeAndUnmakeRestoreKeyAndEvaluation(String line) {
+        ChessModel model = new ChessModel();
+        model.loadFen(line.substring(0, line.indexOf(';')).trim());
+        walk(model, 2, new ChessModel());
+    }
+
+    private static void walk(ChessModel model, int depth, ChessModel scratch) {
+        String fen = model.toFen();
+        long key = model.positionKey();
+        int evaluation = model.evaluate();
+        int[] moves = new int[ChessModel.MAX_MOVES];
+        int count = model.generateLegalMoves(moves);
+        for (int i = 0; i < count; i++) {
+            model.makeMove(moves[i]);
+            scratch.loadFen(model.toFen());
+            assertEquals(scratch.positionKey(), model.positionKey(), fen + " " + Move.toString(moves[i]));
+            assertEquals(scratch.evaluate(), model.evaluate(), fen + " " + Move.toString(moves[i]));
+            if (depth > 1) {
+                walk(model, depth - 1, scratch);
+            }
+            model.unmakeMove();
+            assertEquals(fen, model.toFen());
+            assertEquals(key, model.positionKey(), fen + " " + Move.toString(moves[i]));
+            assertEquals(evaluation, model.evaluate(), fen + " " + Move.toString(moves[i]));
+        }
+    }
+}
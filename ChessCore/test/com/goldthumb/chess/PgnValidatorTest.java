@@ -0,0 +1,58 @@
+package com.goldthumb.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+@Timeout(30)
+class PgnValidatorTest {
+    // More games than the queue holds, so a dead worker would leave the reader blocked
+    private static final int GAMES = 1000;
+
+    @TempDir
+    Path dir;
+
+    private Path pgn(int games) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < games; i++) {
+            text.append("[White \"W").append(i).append("\"]\n[Black \"B").append(i).append("\"]\n")
+                    .append("[Result \"1-0\"]\n\n1. f3 e5 2. g4 Qh4# 1-0\n\n");
+        }
+        Path file = dir.resolve("games.pgn");
+        Files.writeString(file, text);
+        return file;
+    }
+
+    @Test
+    void keepsValidatingWhenTheArchiveFails() throws IOException, InterruptedException {
+        GameArchiveWriter archive = GameArchiveWriter.open(dir.resolve("games.cga"));
+        // Every append now throws
+        archive.close();
+
+        PgnValidator validator = new PgnValidator(archive);
+        try (PgnReader reader = PgnReader.open(pgn(GAMES))) {
+            validator.run(reader, 1);
+        }
+        assertEquals(GAMES, validator.getGames());
+        assertEquals(0, validator.getInvalid());
+        assertEquals(GAMES, validator.getUnarchived());
+    }
+
+    @Test
+    void archivesValidGames() throws IOException, InterruptedException {
+        Path file = dir.resolve("games.cga");
+        PgnValidator validator;
+        try (GameArchiveWriter archive = GameArchiveWriter.open(file); PgnReader reader = PgnReader.open(pgn(3))) {
+            validator = new PgnValidator(archive);
+            validator.run(reader, 2);
+        }
+        assertEquals(0, validator.getUnarchived());
+        assertEquals(3, GameArchive.open(file).size());
+    }
+}
@@ -0,0 +1,87 @@
+package com.goldthumb.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class PolyglotBookTest {
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    void keysTheStartPositionLikePolyglot() {
+        ChessModel model = new ChessModel();
+        model.reset();
+        assertEquals(0x463b96181691fc9cL, model.positionKey());
+    }
+
+    // The test positions published with the Polyglot book format
+    @ParameterizedTest
+    @CsvSource({
+            "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1, 823c9b50fd114196",
+            "rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2, 0756b94461c50fb0",
+            "rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2, 662fafb965db29d4",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3, 22a48b5a8e47ff78",
+            "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR b kq - 0 3, 652a607ca3f242c1",
+            "rnbq1bnr/ppp1pkpp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR w - - 0 4, 00fdd303c946bdd9",
+            "rnbqkbnr/p1pppppp/8/8/PpP4P/8/1P1PPPP1/RNBQKBNR b KQkq c3 0 3, 3c8123ea7b067637",
+            "rnbqkbnr/p1pppppp/8/8/P6P/R1p5/1P1PPPP1/1NBQKBNR b Kkq - 0 4, 5c3f9b829b279560"
+    })
+    void keysPositionsLikePolyglot(String fen, String key) {
+        ChessModel model = new ChessModel();
+        model.loadFen(fen);
+        assertEquals(Long.parseUnsignedLong(key, 16), model.positionKey());
+    }
+
+    @Test
+    void keepsTheSameKeyWhenTheMovesArePlayed() {
+        ChessModel model = new ChessModel();
+        model.reset();
+        model.makeMove(Move.of(Bitboards.square(4, 1), Bitboards.square(4, 3)));
+        model.makeMove(Move.of(Bitboards.square(3, 6), Bitboards.square(3, 4)));
+        model.makeMove(Move.of(Bitboards.square(4, 3), Bitboards.square(4, 4)));
+        model.makeMove(Move.of(Bitboards.square(5, 6), Bitboards.square(5, 4)));
+        assertEquals(0x22a48b5a8e47ff78L, model.positionKey());
+    }
+
+    @Test
+    void probesOnlyLegalMoves(@TempDir Path dir) throws IOException {
+        long start = 0x463b96181691fc9cL;
+        ByteBuffer entries = ByteBuffer.allocate(4 * 16);
+        // Keys sorted as unsigned: a smaller key, e2e4, e2e5 (not legal), d2d4, and nothing above
+        putEntry(entries, 1L, bookMove(0, 0, 0, 1), 1);
+        putEntry(entries, start, bookMove(4, 1, 4, 3), 10);
+        putEntry(entries, start, bookMove(4, 1, 4, 4), 50);
+        putEntry(entries, start, bookMove(3, 1, 3, 3), 20);
+        Path file = dir.resolve("book.bin");
+        Files.write(file, entries.array());
+
+        PolyglotBook book = PolyglotBook.open(file);
+        assertEquals(4, book.size());
+        ChessModel model = new ChessModel();
+        model.reset();
+        int[] moves = new int[PolyglotBook.MAX_BOOK_MOVES];
+        int[] weights = new int[PolyglotBook.MAX_BOOK_MOVES];
+        assertEquals(2, book.probe(model, moves, weights));
+        assertEquals(Move.of(Bitboards.square(4, 1), Bitboards.square(4, 3)), moves[0]);
+        assertEquals(20, weights[1]);
+        assertEquals(Move.of(Bitboards.square(3, 1), Bitboards.square(3, 3)),
+                book.selectMove(model, PolyglotBook.Selection.BEST, moves, weights));
+        assertEquals(START, model.toFen());
+    }
+
+    private static int bookMove(int fromFile, int fromRow, int toFile, int toRow) {
+        return toFile | toRow << 3 | fromFile << 6 | fromRow << 9;
+    }
+
+    private static void putEntry(ByteBuffer entries, long key, int move, int weight) {
+        entries.putLong(key).putShort((short) move).putShort((short) weight).putInt(0);
+    }
+}
@@ -0,0 +1,65 @@
+package com.goldthumb.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class PositionTest {
+    @Test
+    void publishesOnlyMovesPlayed() {
+        ChessModel model = new ChessModel();
+        assertNull(model.getPosition());
+        model.setPublishing(true);
+        model.reset();
+
+        Position start = model.getPosition();
+        int[] moves = new int[ChessModel.MAX_MOVES];
+        int count = model.generateLegalMoves(moves);
+        for (int i = 0; i < count; i++) {
+            model.isLegalMove(moves[i]);
+        }
+        model.isCheckmate(Player.WHITE);
+        model.makeMove(moves[0]);
+        model.unmakeMove();
+        assertSame(start, model.getPosition());
+
+        model.movePiece(4, 1, 4, 3);
+        Position played = model.getPosition();
+        assertEquals(model.toFen(), played.toFen());
+        assertEquals(model.moveAt(0), played.getLastMove());
+        assertEquals(model.positionKey(), played.positionKey());
+
+        int reply = Move.of(Bitboards.square(4, 6), Bitboards.square(4, 4));
+        model.playMove(reply);
+        assertEquals(reply, model.getPosition().getLastMove());
+        assertEquals(2, model.getPosition().getPly());
+        // The position a reader already holds does not change
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", played.toFen());
+    }
+
+    @Test
+    void restartsAModelFromAPosition() {
+        ChessModel model = new ChessModel();
+        model.setPublishing(true);
+        model.loadFen("r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq d6 0 20");
+        ChessModel copy = new ChessModel(model.getPosition());
+        assertEquals(model.toFen(), copy.toFen());
+        assertEquals(model.positionKey(), copy.positionKey());
+    }
+
+    @Test
+    void promotesToTheChosenPiece() {
+        ChessModel model = new ChessModel();
+        model.loadFen("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1");
+        model.movePiece(1, 6, 1, 7, Rank.KNIGHT);
+        assertEquals("1N2k3/8/8/8/8/8/8/4K3 b - - 0 1", model.toFen());
+
+        model.loadFen("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1");
+        model.movePiece(1, 6, 1, 7);
+        assertEquals("1Q2k3/8/8/8/8/8/8/4K3 b - - 0 1", model.toFen());
+        assertThrows(IllegalArgumentException.class, () -> model.movePiece(4, 7, 3, 7, Rank.KING));
+    }
+}
@@ -0,0 +1,71 @@
+package com.goldthumb.chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SanTest {
+    private final int[] legal = new int[ChessModel.MAX_MOVES];
+
+    private int parse(ChessModel model, String san) {
+        return San.parse(model, san, 0, san.length(), legal);
+    }
+
+    // Plays the moves and checks that each one reads back as the move it names
+    private ChessModel play(String fen, String... moves) {
+        ChessModel model = new ChessModel();
+        if (fen == null) {
+            model.reset();
+        } else {
+            model.loadFen(fen);
+        }
+        for (String san : moves) {
+            int move = parse(model, san);
+            assertTrue(move != Move.NONE && move != San.AMBIGUOUS, san);
+            model.makeMove(move);
+        }
+        return model;
+    }
+
+    @Test
+    void playsAnOpening() {
+        ChessModel model = play(null, "e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Bxc6", "dxc6", "O-O", "Bg4");
+        assertEquals("r2qkbnr/1pp2ppp/p1p5/4p3/4P1b1/5N2/PPPP1PPP/RNBQ1RK1 w kq - 2 6", model.toFen());
+    }
+
+    @Test
+    void readsPromotionsAndCheckSuffixes() {
+        ChessModel model = play("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1", "b8=N");
+        assertEquals("1N2k3/8/8/8/8/8/8/4K3 b - - 0 1", model.toFen());
+
+        model = play("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1", "b8=Q+");
+        assertEquals("1Q2k3/8/8/8/8/8/8/4K3 b - - 0 1", model.toFen());
+    }
+
+    @Test
+    void readsCastlingBothWays() {
+        String fen = "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1";
+        assertEquals("r3k2r/8/8/8/8/8/8/2KR3R b kq - 1 1", play(fen, "O-O-O").toFen());
+        assertEquals("r3k2r/8/8/8/8/8/8/R4RK1 b kq - 1 1", play(fen, "O-O").toFen());
+    }
+
+    @Test
+    void needsDisambiguation() {
+        ChessModel model = new ChessModel();
+        model.loadFen("4k3/8/8/8/8/8/8/1N2KN2 w - - 0 1");
+        assertEquals(San.AMBIGUOUS, parse(model, "Nd2"));
+        assertEquals(Move.of(Bitboards.square(1, 0), Bitboards.square(3, 1)), parse(model, "Nbd2"));
+        assertEquals(Move.of(Bitboards.square(5, 0), Bitboards.square(3, 1)), parse(model, "Nfd2"));
+    }
+
+    @Test
+    void rejectsIllegalMoves() {
+        ChessModel model = new ChessModel();
+        model.reset();
+        assertEquals(Move.NONE, parse(model, "e5"));
+        assertEquals(Move.NONE, parse(model, "Nf6"));
+        assertEquals(Move.NONE, parse(model, "O-O"));
+        assertEquals(Move.NONE, parse(model, "x"));
+    }
+}
@@ -0,0 +1,602 @@
+package com.goldthumb.chess.ui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+
+import com.goldthumb.chess.Bitbases;
+import com.goldthumb.chess.Bitboards;
+import com.goldthumb.chess.ChessModel;
+import com.goldthumb.chess.ChessPiece;
+import com.goldthumb.chess.GameArchiveWriter;
+import com.goldthumb.chess.GameResult;
+import com.goldthumb.chess.Move;
+import com.goldthumb.chess.Player;
+import com.goldthumb.chess.PolyglotBook;
+import com.goldthumb.chess.Rank;
+import com.goldthumb.chess.SearchEngine;
+import com.goldthumb.chess.SearchLimits;
+import com.goldthumb.chess.SearchResult;
+
+import com.goldthumb.chess.net.WireConnection;
+
+public class ChessController implements ChessDelegate, ActionListener {
+    private String SOCKET_SERVER_ADDR = "localhost";
+    private int PORT = 50000;
+    private static final long COMPUTER_THINK_MILLIS = 2000;
+    private static final int RECONNECT_ATTEMPTS = 8;
+    // Polyglot opening book for the computer player, e.g. -Dchess.book=books/performance.bin
+    private static final String BOOK_PROPERTY = "chess.book";
+    // Directory of the KPK/KRK/KQK bitbases, generated there on first use, e.g. -Dchess.bitbases=bitbases.
+    // Nothing is written to disk unless it is set.
+    private static final String BITBASES_PROPERTY = "chess.bitbases";
+    // Every finished or abandoned game is appended to this binary archive, e.g. -Dchess.archive=games.cga.
+    // Games are not archived unless it is set.
+    private static final String ARCHIVE_PROPERTY = "chess.archive";
+    
+    private ChessModel chessModel = new ChessModel();
+    
+    private SearchEngine engine = new SearchEngine(SearchEngine.DEFAULT_HASH_MB,
+            Runtime.getRuntime().availableProcessors());
+    private ExecutorService engineExecutor = Executors.newSingleThreadExecutor();
+    // Runs the current connection; replaced for every new one
+    private ExecutorService networkExecutor;
+    private Player computerPlayer;
+    private boolean computerThinking;
+    private Bitbases bitbases;
+    private GameArchiveWriter archive;
+    
+    private JFrame frame;
+    private ChessView chessBoardPanel;
+    private JButton resetBtn;
+    private JButton serverBtn;
+    private JButton clientBtn;
+    private JButton computerBtn;
+    private JButton watchBtn;
+    private JLabel statusLabel;
+    
+    private ServerSocketChannel listener;
+    private volatile WireConnection connection;
+    
+    ChessController() {
+        // The view paints from the published position, never from the model being changed
+        chessModel.setPublishing(true);
+        chessModel.reset();
+        loadBook();
+        loadBitbases();
+        
+        frame = new JFrame("Chess - Local Game");
+        frame.setSize(500, 550);
+        frame.setLocation(200, 1300);
+        frame.setLayout(new BorderLayout());
+        
+        chessBoardPanel = new ChessView(this);
+        
+        frame.add(chessBoardPanel, BorderLayout.CENTER);
+
+        statusLabel = new JLabel(" ", SwingConstants.CENTER);
+        frame.add(statusLabel, BorderLayout.PAGE_START);
+        
+        var buttonsPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        resetBtn = new JButton("Reset");
+        resetBtn.addActionListener(this);
+        buttonsPanel.add(resetBtn);
+        
+        serverBtn = new JButton("Host Game");
+        buttonsPanel.add(serverBtn);
+        serverBtn.addActionListener(this);
+        
+        clientBtn = new JButton("Join Game");
+        buttonsPanel.add(clientBtn);
+        clientBtn.addActionListener(this);
+        
+        computerBtn = new JButton("Play Computer");
+        buttonsPanel.add(computerBtn);
+        computerBtn.addActionListener(this);
+        
+        watchBtn = new JButton("Watch");
+        buttonsPanel.add(watchBtn);
+        watchBtn.addActionListener(this);
+        
+        frame.add(buttonsPanel, BorderLayout.PAGE_END);
+        
+        updateStatus();
+        frame.setVisible(true);
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                super.windowClosing(e);
+                archiveGame();
+                closeNetworkResources();
+            }
+        });
+    }
+
+    private void closeNetworkResources() {
+        if (networkExecutor != null) {
+            // Interrupts a reconnect delay; a blocked read ends when the connection is closed
+            networkExecutor.shutdownNow();
+            networkExecutor = null;
+        }
+        try {
+            if (listener != null) listener.close();
+            if (connection != null) connection.close();
+            connection = null;
+        } catch (IOException e1) {
+            e1.printStackTrace();
+        }
+    }
+
+    private void loadBook() {
+        String bookFile = System.getProperty(BOOK_PROPERTY);
+        if (bookFile == null) {
+            return;
+        }
+        try {
+            engine.setBook(PolyglotBook.open(Paths.get(bookFile)), PolyglotBook.Selection.WEIGHTED_RANDOM);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Generating takes about a second, so it happens on the engine thread
+    private void loadBitbases() {
+        String dir = System.getProperty(BITBASES_PROPERTY);
+        if (dir == null) {
+            return;
+        }
+        engineExecutor.execute(() -> {
+            try {
+                Bitbases loaded = Bitbases.openOrGenerate(Paths.get(dir));
+                engine.setBitbases(loaded);
+                SwingUtilities.invokeLater(() -> {
+                    bitbases = loaded;
+                    updateStatus();
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void archiveGame() {
+        String file = System.getProperty(ARCHIVE_PROPERTY);
+        if (file == null || chessModel.getPly() == 0) {
+            return;
+        }
+        String user = System.getProperty("user.name");
+        String white = computerPlayer == Player.WHITE ? "Computer" : user;
+        String black = computerPlayer == Player.BLACK ? "Computer" : user;
+        try {
+            if (archive == null) {
+                archive = GameArchiveWriter.open(Paths.get(file));
+            }
+            archive.append(white, black, GameResult.of(chessModel), chessModel);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void updateStatus() {
+        Player player = chessModel.getPlayerInTurn();
+        String side = player == Player.WHITE ? "White" : "Black";
+        String other = player == Player.WHITE ? "Black" : "White";
+        // A side with a bitbase win has moves, and a bitbase loss is never a stalemate
+        int known = bitbases == null ? Bitbases.UNKNOWN : bitbases.probe(chessModel);
+
+        String status;
+        if (known != Bitbases.WIN && chessModel.isCheckmate(player)) {
+            status = "Checkmate - " + other + " wins";
+        } else if (known != Bitbases.WIN && known != Bitbases.LOSS && chessModel.isStalemate(player)) {
+            status = "Stalemate - draw";
+        } else if (chessModel.isThreefoldRepetition()) {
+            status = "Draw by threefold repetition";
+        } else if (chessModel.getHalfmoveClock() >= 100) {
+            status = "Draw by the fifty-move rule";
+        } else if (known == Bitbases.WIN) {
+            status = side + " to move - " + side + " wins with best play";
+        } else if (known == Bitbases.LOSS) {
+            status = side + " to move - " + other + " wins with best play";
+        } else if (known == Bitbases.DRAW) {
+            status = side + " to move - draw with best play";
+        } else {
+            status = side + " to move" + (chessModel.isKingInCheck(player) ? " - check" : "");
+        }
+        statusLabel.setText(status);
+    }
+
+    private String getLocalIPAddress() {
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            e.printStackTrace();
+            return "localhost";
+        }
+    }
+
+    public static void main(String[] args) {
+        new ChessController();
+    }
+
+    @Override
+    public ChessPiece pieceAt(int col, int row) {
+        return chessModel.getPosition().pieceAt(col, row);
+    }
+
+    // The board has no promotion chooser, so a pawn dragged to the last row becomes a queen
+    @Override
+    public void movePiece(int fromCol, int fromRow, int toCol, int toRow) {
+        movePiece(fromCol, fromRow, toCol, toRow, Rank.QUEEN);
+    }
+
+    private void movePiece(int fromCol, int fromRow, int toCol, int toRow, Rank promotion) {
+        if (computerThinking) return;
+        WireConnection peer = connection;
+        if (peer != null && peer.isWatching()) return;
+        // A server game only accepts moves for the colour it assigned
+        if (peer != null && peer.getPlayer() != null && peer.getPlayer() != chessModel.getPlayerInTurn()) return;
+        int ply = chessModel.getPly();
+        chessModel.movePiece(fromCol, fromRow, toCol, toRow, promotion);
+        chessBoardPanel.boardChanged();
+        updateStatus();
+        if (peer != null && chessModel.getPly() > ply) {
+            try {
+                peer.sendMove(chessModel.moveAt(ply), chessModel.positionKey());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        requestComputerMove();
+    }
+    
+    // The computer plays neither side after Reset or once a network game starts
+    private void stopComputerPlayer() {
+        computerPlayer = null;
+        engine.stop();
+    }
+    
+    // Searches on a copy of the position off the EDT, then plays the result through movePiece
+    private void requestComputerMove() {
+        if (computerPlayer == null || computerThinking || connection != null
+                || chessModel.getPlayerInTurn() != computerPlayer) {
+            return;
+        }
+        computerThinking = true;
+        ChessModel position = new ChessModel(chessModel);
+        long positionKey = chessModel.positionKey();
+        engineExecutor.execute(() -> {
+            SearchResult result = engine.search(position, SearchLimits.time(COMPUTER_THINK_MILLIS));
+            System.out.println("computer: " + result);
+            SwingUtilities.invokeLater(() -> {
+                computerThinking = false;
+                if (computerPlayer == null) {
+                    // Stopped by Reset or a network game
+                    return;
+                }
+                if (chessModel.positionKey() != positionKey) {
+                    // The board was reset while searching
+                    requestComputerMove();
+                    return;
+                }
+                int move = result.getBestMove();
+                if (move != Move.NONE) {
+                    int from = Move.from(move);
+                    int to = Move.to(move);
+                    movePiece(Bitboards.col(from), Bitboards.row(from), Bitboards.col(to), Bitboards.row(to),
+                            Move.isPromotion(move) ? Move.promotion(move) : Rank.QUEEN);
+                }
+            });
+        });
+    }
+    
+    private void receiveMoves(WireConnection peer) throws IOException {
+        System.out.println("Using the " + (peer.isBinary() ? "binary" : "text") + " protocol");
+        int move;
+        while ((move = peer.receiveMove()) != -1) {
+            if (move == WireConnection.STARTED) {
+                SwingUtilities.invokeLater(() -> startServerGame(peer));
+                continue;
+            }
+            if (move == WireConnection.POSITION) {
+                String fen = peer.getPositionFen();
+                SwingUtilities.invokeLater(() -> showServerPosition(peer, fen));
+                continue;
+            }
+            if (move == WireConnection.RESUMED) {
+                System.out.println("Resumed game " + peer.getGameId() + " at ply " + peer.getPly());
+                continue;
+            }
+            System.out.println("chess move received: " + Move.toString(move));
+            int received = move;
+            long positionKey = peer.getPositionKey();
+            SwingUtilities.invokeLater(() -> playReceivedMove(peer, received, positionKey));
+        }
+        if (peer.isEnded()) {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame, "Game over: " + peer.getResult()));
+        }
+    }
+
+    // A GameServer paired us with an opponent
+    private void startServerGame(WireConnection peer) {
+        if (peer != connection) {
+            return;
+        }
+        chessModel.reset();
+        chessBoardPanel.boardChanged();
+        updateStatus();
+        frame.setTitle("Chess - Playing " + (peer.getPlayer() == Player.WHITE ? "White" : "Black")
+                + " in game " + peer.getGameId());
+    }
+
+    // The board of a server game, sent when watching starts and whenever we fell too far behind
+    private void showServerPosition(WireConnection peer, String fen) {
+        if (peer != connection) {
+            return;
+        }
+        try {
+            chessModel.loadFen(fen);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(frame, "The server sent a position that cannot be shown: "
+                    + e.getMessage() + ". Connection closed.");
+            resetConnection();
+            return;
+        }
+        chessBoardPanel.boardChanged();
+        updateStatus();
+    }
+
+    private void playReceivedMove(WireConnection peer, int move, long positionKey) {
+        if (peer != connection) {
+            return;
+        }
+        if (!peer.isBinary()) {
+            // The text format has no promotion piece, movePiece promotes to a queen
+            int from = Move.from(move);
+            int to = Move.to(move);
+            chessModel.movePiece(Bitboards.col(from), Bitboards.row(from), Bitboards.col(to), Bitboards.row(to));
+        } else if (chessModel.isLegalMove(move)) {
+            chessModel.playMove(move);
+        }
+        chessBoardPanel.boardChanged();
+        updateStatus();
+        if (peer.isBinary() && chessModel.positionKey() != positionKey) {
+            JOptionPane.showMessageDialog(frame, "The board is out of sync with your opponent after "
+                    + Move.toString(move) + ". Connection closed.");
+            resetConnection();
+        }
+    }
+    
+    // The thread of a connection ends with its task, or when closeNetworkResources interrupts it
+    private void runNetworkTask(Runnable task) {
+        networkExecutor = Executors.newSingleThreadExecutor();
+        networkExecutor.execute(task);
+        networkExecutor.shutdown();
+    }
+
+    private void runSocketServer() {
+        runNetworkTask(() -> {
+            try {
+                listener = ServerSocketChannel.open().bind(new InetSocketAddress(PORT));
+                System.out.println("Server is listening on " + getLocalIPAddress() + ":" + PORT);
+                SocketChannel channel = listener.accept();
+                System.out.println("Connected from " + channel.getRemoteAddress());
+                connection = WireConnection.accept(channel);
+                receiveMoves(connection);
+            } catch (ClosedChannelException e1) {
+                // Closed by resetConnection
+            } catch (IOException e1) {
+                e1.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    JOptionPane.showMessageDialog(frame, "Server error: " + e1.getMessage());
+                    resetConnection();
+                });
+            }
+        });
+    }
+    
+    // Plays when gameId is -1, otherwise watches that game on a GameServer
+    private void runSocketClient(String serverIP, int gameId) {
+        runNetworkTask(() -> {
+            WireConnection peer = null;
+            try {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress(serverIP, PORT));
+                System.out.println("Connected to server at " + serverIP + ":" + PORT);
+                peer = WireConnection.connect(channel);
+                if (gameId >= 0) {
+                    peer.sendWatch(gameId);
+                } else if (peer.isBinary()) {
+                    peer.sendPlay();
+                }
+                connection = peer;
+                receiveMoves(peer);
+            } catch (ClosedChannelException e1) {
+                // Closed by resetConnection
+                return;
+            } catch (IOException e1) {
+                e1.printStackTrace();
+                if (peer == null || peer.getSessionId() == 0) {
+                    SwingUtilities.invokeLater(() -> {
+                        JOptionPane.showMessageDialog(frame, "Failed to connect to server: " + e1.getMessage());
+                        resetConnection();
+                    });
+                    return;
+                }
+            }
+            resumeServerGame(serverIP, peer);
+        });
+    }
+
+    // Reconnects to a GameServer game after the connection dropped. The delays grow and
+    // are jittered, so clients cut off together do not all come back at the same moment.
+    private void resumeServerGame(String serverIP, WireConnection lost) {
+        WireConnection peer = lost;
+        for (int attempt = 0; attempt < RECONNECT_ATTEMPTS; attempt++) {
+            // Reset, watching, or the game is over
+            if (peer != connection || peer.getSessionId() == 0 || peer.isWatching() || peer.isEnded()) {
+                return;
+            }
+            try {
+                Thread.sleep((250L << Math.min(attempt, 5)) + ThreadLocalRandom.current().nextLong(250));
+                WireConnection resumed = WireConnection.connect(SocketChannel.open(new InetSocketAddress(serverIP, PORT)));
+                resumed.sendResume(peer.getSessionId(), peer.getPly());
+                if (peer != connection) {
+                    resumed.close();
+                    return;
+                }
+                connection = resumed;
+                peer = resumed;
+                attempt = -1;
+                receiveMoves(resumed);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+        WireConnection gone = peer;
+        SwingUtilities.invokeLater(() -> {
+            if (gone == connection) {
+                JOptionPane.showMessageDialog(frame, "Lost the connection to the server");
+                resetConnection();
+            }
+        });
+    }
+
+    private void resetConnection() {
+        closeNetworkResources();
+        serverBtn.setEnabled(true);
+        clientBtn.setEnabled(true);
+        watchBtn.setEnabled(true);
+        frame.setTitle("Chess - Local Game");
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (e.getSource() == resetBtn) {
+            // Archived first, it names the side the computer played
+            archiveGame();
+            stopComputerPlayer();
+            chessModel.reset();
+            chessBoardPanel.boardChanged();
+            updateStatus();
+            resetConnection();
+        } else if (e.getSource() == computerBtn) {
+            if (connection != null || !serverBtn.isEnabled()) {
+                JOptionPane.showMessageDialog(frame, "Reset the network game first");
+                return;
+            }
+            Object[] options = {"White", "Black"};
+            int choice = JOptionPane.showOptionDialog(frame, "Computer plays:", "Play Computer",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[1]);
+            if (choice < 0) {
+                return;
+            }
+            computerPlayer = choice == 0 ? Player.WHITE : Player.BLACK;
+            frame.setTitle("Chess - Computer plays " + options[choice]);
+            requestComputerMove();
+        } else if (e.getSource() == serverBtn) {
+            String portStr = JOptionPane.showInputDialog(frame, "Enter port number:", PORT);
+            if (portStr != null && !portStr.trim().isEmpty()) {
+                try {
+                    PORT = Integer.parseInt(portStr.trim());
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(frame, "Invalid port number");
+                    return;
+                }
+            }
+            
+            stopComputerPlayer();
+            serverBtn.setEnabled(false);
+            clientBtn.setEnabled(false);
+            watchBtn.setEnabled(false);
+            SOCKET_SERVER_ADDR = getLocalIPAddress();
+            frame.setTitle("Chess Server - " + SOCKET_SERVER_ADDR + ":" + PORT);
+            runSocketServer();
+            
+            JOptionPane.showMessageDialog(frame, 
+                "Server is running!\n\n" +
+                "Your IP: " + SOCKET_SERVER_ADDR + "\n" +
+                "Port: " + PORT + "\n\n" +
+                "Share these with your friend to connect");
+        } else if (e.getSource() == clientBtn) {
+            String serverIP = askServerAddress();
+            if (serverIP == null) {
+                return;
+            }
+            
+            stopComputerPlayer();
+            serverBtn.setEnabled(false);
+            clientBtn.setEnabled(false);
+            watchBtn.setEnabled(false);
+            frame.setTitle("Chess Client - Connected to " + serverIP + ":" + PORT);
+            runSocketClient(serverIP, -1);
+        } else if (e.getSource() == watchBtn) {
+            String serverIP = askServerAddress();
+            if (serverIP == null) {
+                return;
+            }
+            String gameStr = JOptionPane.showInputDialog(frame, "Enter game number:");
+            int gameId;
+            try {
+                gameId = Integer.parseInt(gameStr == null ? "" : gameStr.trim());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame, "Invalid game number");
+                return;
+            }
+            
+            stopComputerPlayer();
+            serverBtn.setEnabled(false);
+            clientBtn.setEnabled(false);
+            watchBtn.setEnabled(false);
+            frame.setTitle("Chess - Watching game " + gameId + " on " + serverIP + ":" + PORT);
+            runSocketClient(serverIP, gameId);
+        }
+    }
+
+    // Asks for the server IP and port; null if cancelled
+    private String askServerAddress() {
+        String serverIP = JOptionPane.showInputDialog(frame, 
+            "Enter server IP:", 
+            SOCKET_SERVER_ADDR);
+        
+        if (serverIP == null || serverIP.trim().isEmpty()) {
+            return null;
+        }
+        
+        String portStr = JOptionPane.showInputDialog(frame, "Enter port number:", PORT);
+        if (portStr != null && !portStr.trim().isEmpty()) {
+            try {
+                PORT = Integer.parseInt(portStr.trim());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame, "Invalid port number");
+                return null;
+            }
+        }
+        return serverIP.trim();
+    }
+}
\ No newline at end of file
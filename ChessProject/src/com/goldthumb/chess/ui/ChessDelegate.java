@@ -1,4 +1,6 @@
-package com.goldthumb.chess;
+package com.goldthumb.chess.ui;
+
+import com.goldthumb.chess.ChessPiece;
 
 public interface ChessDelegate {
 	
@@ -0,0 +1,317 @@
+package com.goldthumb.chess.ui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import javax.swing.JPanel;
+
+import com.goldthumb.chess.ChessConstants;
+import com.goldthumb.chess.ChessPiece;
+import com.goldthumb.chess.Rank;
+
+public class ChessView extends JPanel implements MouseListener, MouseMotionListener {
+
+	private static final long serialVersionUID = -3320545318004171146L;
+	
+	// Prints the time from JVM start to the first paint and to the last piece image, e.g. -Dchess.startupTiming=true
+	private static final String STARTUP_TIMING_PROPERTY = "chess.startupTiming";
+	private static final String WHITE_GLYPHS = "\u2654\u2655\u2657\u2656\u2658\u2659";
+	private static final String BLACK_GLYPHS = "\u265A\u265B\u265D\u265C\u265E\u265F";
+	private static final String LETTERS = "KQBRNP";
+	
+	private ChessDelegate chessDelegate;
+	
+	private double scaleFactor = 0.9;
+	private int originX = -1;
+	private int originY = -1;
+	private int cellSide = -1;
+	
+	private Map<String, Image> keyNameValueImage = new HashMap<String, Image>();
+	private int fromCol = -1;
+	private int fromRow = -1;
+	private ChessPiece movingPiece;
+	private Point movingPiecePoint;
+	
+	// The board and the pieces standing still, drawn once and redrawn only on a resize or after a move
+	private BufferedImage boardLayer;
+	private boolean boardLayerValid;
+	
+	// The piece images scaled once to the current cell size, so painting never rescales the PNGs
+	private Map<String, Image> sprites = new HashMap<String, Image>();
+	private int spriteSide = -1;
+	private boolean painted;
+	
+	ChessView(ChessDelegate chessDelegate) {
+		this.chessDelegate = chessDelegate;
+		
+		String[] imageNames = {
+			ChessConstants.bBishop,
+			ChessConstants.wBishop,
+			ChessConstants.bKing,
+			ChessConstants.wKing,
+			ChessConstants.bKnight,
+			ChessConstants.wKnight,
+			ChessConstants.bPawn,
+			ChessConstants.wPawn,
+			ChessConstants.bQueen,
+			ChessConstants.wQueen,
+			ChessConstants.bRook,
+			ChessConstants.wRook,
+		};
+		
+		// Until an image arrives its piece is drawn as a glyph
+		SpriteLoader.load(imageNames, this::spriteLoaded, this::spritesLoaded);
+		
+		addMouseListener(this);
+		addMouseMotionListener(this);
+	}
+	
+	@Override
+	protected void paintChildren(Graphics g) {
+		super.paintChildren(g);
+		
+		int smaller = Math.min(getSize().width, getSize().height);
+		cellSide = (int) (((double)smaller) * scaleFactor / 8);
+		originX = (getSize().width - 8 * cellSide) / 2;
+		originY = (getSize().height - 8 * cellSide) / 2;
+		
+		Graphics2D g2 = (Graphics2D)g;
+		
+		if (!boardLayerValid || boardLayer == null || boardLayer.getWidth() != 8 * cellSide) {
+			renderBoardLayer();
+		}
+		g2.drawImage(boardLayer, originX, originY, null);
+		
+		if (!painted) {
+			painted = true;
+			reportStartup("first paint, " + keyNameValueImage.size() + " of 12 piece images");
+		}
+		
+		if (movingPiece != null && movingPiecePoint != null) {
+			Image img = sprite(movingPiece.getImgName());
+			g2.drawImage(img, movingPiecePoint.x - cellSide/2, movingPiecePoint.y - cellSide/2, null);
+		}
+	}
+	
+	// The board changed, e.g. after a move or a reset
+	void boardChanged() {
+		boardLayerValid = false;
+		repaint();
+	}
+	
+	private void renderBoardLayer() {
+		int side = Math.max(1, 8 * cellSide);
+		if (boardLayer == null || boardLayer.getWidth() != side) {
+			GraphicsConfiguration gc = getGraphicsConfiguration();
+			boardLayer = gc != null
+					? gc.createCompatibleImage(side, side, Transparency.OPAQUE)
+					: new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+		}
+		Graphics2D g2 = boardLayer.createGraphics();
+		try {
+			// drawBoard and drawPieces place squares relative to the panel
+			g2.translate(-originX, -originY);
+			drawBoard(g2);
+			drawPieces(g2);
+		} finally {
+			g2.dispose();
+		}
+		boardLayerValid = true;
+	}
+	
+	private void drawPieces(Graphics2D g2) {
+		for (int row = 0; row < 8; row++) {
+			for (int col = 0; col < 8; col++) {
+				ChessPiece p = chessDelegate.pieceAt(col, row);
+				if (p != null && p != movingPiece) {
+					drawImage(g2, col, row, p.getImgName());
+				}
+			}
+		}
+	}
+	
+	private void drawImage(Graphics2D g2, int col, int row, String imgName) {
+		Image img = sprite(imgName);
+		g2.drawImage(img, originX + col * cellSide, originY + (7 - row) * cellSide, null);
+	}
+	
+	private Image sprite(String imgName) {
+		if (spriteSide != cellSide) {
+			sprites.clear();
+			spriteSide = cellSide;
+		}
+		Image sprite = sprites.get(imgName);
+		if (sprite == null && cellSide > 0) {
+			Image img = keyNameValueImage.get(imgName);
+			sprite = img != null ? scaleSprite(img, cellSide) : glyphSprite(imgName, cellSide);
+			sprites.put(imgName, sprite);
+		}
+		return sprite;
+	}
+	
+	private void spriteLoaded(String imgName, Image img) {
+		keyNameValueImage.put(imgName, img);
+		sprites.remove(imgName);
+		boardChanged();
+	}
+	
+	private void spritesLoaded() {
+		reportStartup(keyNameValueImage.size() + " of 12 piece images loaded");
+	}
+	
+	// Counted from the process start time the OS reports, which is coarse on some systems
+	private static void reportStartup(String event) {
+		if (Boolean.getBoolean(STARTUP_TIMING_PROPERTY)) {
+			ProcessHandle.current().info().startInstant().ifPresent(start -> System.out.println("Startup: " + event
+					+ " after " + (System.currentTimeMillis() - start.toEpochMilli()) + " ms"));
+		}
+	}
+	
+	// Placeholder drawn with the Unicode chess symbols, or the piece letter if the font has none
+	private Image glyphSprite(String imgName, int side) {
+		String rank = imgName.substring(0, imgName.indexOf('-')).toUpperCase();
+		int index = Rank.valueOf(rank).ordinal();
+		boolean white = imgName.endsWith("white");
+		String glyph = String.valueOf((white ? WHITE_GLYPHS : BLACK_GLYPHS).charAt(index));
+		Font font = new Font(Font.SERIF, Font.PLAIN, side * 4 / 5);
+		if (font.canDisplayUpTo(glyph) != -1) {
+			glyph = String.valueOf(LETTERS.charAt(index));
+			font = new Font(Font.SANS_SERIF, white ? Font.PLAIN : Font.BOLD, side * 3 / 5);
+		}
+		
+		BufferedImage sprite = translucentImage(side, side);
+		Graphics2D g2 = sprite.createGraphics();
+		try {
+			g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			g2.setFont(font);
+			g2.setColor(Color.black);
+			FontMetrics metrics = g2.getFontMetrics();
+			int x = (side - metrics.stringWidth(glyph)) / 2;
+			int y = (side - metrics.getHeight()) / 2 + metrics.getAscent();
+			g2.drawString(glyph, x, y);
+		} finally {
+			g2.dispose();
+		}
+		return sprite;
+	}
+	
+	private Image scaleSprite(Image img, int side) {
+		// Halve first so the bilinear filter samples every source pixel, then scale to the cell
+		int width = img.getWidth(null);
+		int height = img.getHeight(null);
+		while (width / 2 >= side && height / 2 >= side) {
+			width /= 2;
+			height /= 2;
+			img = scaleImage(img, width, height);
+		}
+		return scaleImage(img, side, side);
+	}
+	
+	private BufferedImage scaleImage(Image img, int width, int height) {
+		BufferedImage scaled = translucentImage(width, height);
+		Graphics2D g2 = scaled.createGraphics();
+		try {
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g2.drawImage(img, 0, 0, width, height, null);
+		} finally {
+			g2.dispose();
+		}
+		return scaled;
+	}
+	
+	private BufferedImage translucentImage(int width, int height) {
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		return gc != null
+				? gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT)
+				: new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+	}
+	
+	private void drawBoard(Graphics2D g2) {
+		for (int j = 0; j < 4; j++) {
+			for (int i = 0; i < 4; i++) {
+				drawSquare(g2, 0 + 2 * i, 0 + 2 * j, true);
+				drawSquare(g2, 1 + 2 * i, 1 + 2 * j, true);
+
+				drawSquare(g2, 1 + 2 * i, 0 + 2 * j, false);
+				drawSquare(g2, 0 + 2 * i, 1 + 2 * j, false);
+			}
+		}
+	}
+	
+	private void drawSquare(Graphics2D g2, int col, int row, boolean light) {
+		g2.setColor(light ? Color.white : Color.gray);		
+		g2.fillRect(originX + col * cellSide, originY + row * cellSide, cellSide, cellSide);
+	}
+
+	@Override
+	public void mouseClicked(MouseEvent e) {}
+
+	@Override
+	public void mousePressed(MouseEvent e) {
+		fromCol = (e.getPoint().x - originX) / cellSide;
+		fromRow = 7 - (e.getPoint().y - originY) / cellSide;
+		movingPiece = chessDelegate.pieceAt(fromCol, fromRow);
+		if (movingPiece != null) {
+			// The dragged piece leaves the cached layer
+			boardLayerValid = false;
+		}
+	}
+
+	@Override
+	public void mouseReleased(MouseEvent e) {
+		int col = (e.getPoint().x - originX) / cellSide;
+		int row = 7 - (e.getPoint().y - originY) / cellSide;
+		
+		if (fromCol != col || fromRow != row) {
+			chessDelegate.movePiece(fromCol, fromRow, col, row);
+		}
+		
+		boolean dragging = movingPiece != null;
+		movingPiece = null;
+		movingPiecePoint = null;
+		if (dragging) {
+			boardChanged();
+		}
+	}
+
+	@Override
+	public void mouseEntered(MouseEvent e) {}
+
+	@Override
+	public void mouseExited(MouseEvent e) {}
+
+	@Override
+	public void mouseDragged(MouseEvent e) {
+		if (movingPiece == null) {
+			return;
+		}
+		// Only the squares the piece leaves and enters are painted again
+		repaintPieceAt(movingPiecePoint);
+		movingPiecePoint = e.getPoint();
+		repaintPieceAt(movingPiecePoint);
+	}
+	
+	private void repaintPieceAt(Point point) {
+		if (point == null) {
+			repaint();
+		} else {
+			repaint(point.x - cellSide/2, point.y - cellSide/2, cellSide, cellSide);
+		}
+	}
+
+	@Override
+	public void mouseMoved(MouseEvent e) {}
+}
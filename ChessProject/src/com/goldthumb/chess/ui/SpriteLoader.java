@@ -0,0 +1,67 @@
+package com.goldthumb.chess.ui;
+
+import java.awt.Image;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+// Decodes the piece images on background threads and hands each one to the event
+// dispatch thread as soon as it is ready, so the board is shown before they are all decoded
+final class SpriteLoader {
+	
+	private SpriteLoader() {
+	}
+	
+	static void load(String[] imgNames, BiConsumer<String, Image> loaded, Runnable done) {
+		// Decode in memory, without ImageIO's temporary cache files
+		ImageIO.setUseCache(false);
+		
+		int threads = Math.min(imgNames.length, Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread t = new Thread(r, "sprite-loader");
+			t.setDaemon(true);
+			return t;
+		});
+		AtomicInteger remaining = new AtomicInteger(imgNames.length);
+		for (String imgName : imgNames) {
+			executor.execute(() -> {
+				try {
+					Image img = loadImage(imgName + ".png");
+					if (img != null) {
+						SwingUtilities.invokeLater(() -> loaded.accept(imgName, img));
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				if (remaining.decrementAndGet() == 0) {
+					SwingUtilities.invokeLater(done);
+				}
+			});
+		}
+		executor.shutdown();
+	}
+	
+	private static Image loadImage(String imgFileName) throws IOException {
+	    // The module's resources first, as packaged in the JAR
+	    try (InputStream is = SpriteLoader.class.getResourceAsStream("/img/" + imgFileName)) {
+	        if (is != null) {
+	            return ImageIO.read(is);
+	        }
+	    }
+	    
+	    // Then the res directory, when run from the source tree
+	    File imgFile = new File("res/img/" + imgFileName);
+	    if (imgFile.exists()) {
+	        return ImageIO.read(imgFile);
+	    }
+	    
+	    throw new FileNotFoundException("Image not found in both resources and file system: " + imgFileName);
+	}
+}
@@ -4,6 +4,8 @@
 /**
  * 
  */
-module ChessProject {
+module com.goldthumb.chess.ui {
 	requires java.desktop;
-}
\ No newline at end of file
+	requires com.goldthumb.chess.core;
+	requires com.goldthumb.chess.net;
+}
@@ -0,0 +1,35 @@
+#!/bin/bash
+# Builds a trimmed runtime image with only java.base and the chess core and
+# server modules, then records a CDS archive of the classes the server loads
+# on startup so later launches map them instead of parsing them again.
+#
+#   mvn -B package && ChessServer/package-server.sh [output-dir]
+#   <output-dir>/bin/chess-server --port 5000
+set -e
+
+cd "$(dirname "$0")/.."
+OUT=${1:-ChessServer/target/image}
+VERSION=1.0-SNAPSHOT
+MAIN=com.goldthumb.chess.net/com.goldthumb.chess.net.GameServer
+
+rm -rf "$OUT"
+jlink --module-path ChessCore/target/chess-core-$VERSION.jar:ChessServer/target/chess-server-$VERSION.jar \
+    --add-modules com.goldthumb.chess.net \
+    --launcher chess-server=$MAIN \
+    --strip-debug --no-header-files --no-man-pages \
+    --output "$OUT"
+
+# Archive of the JDK classes, then one on top of it for the server's own classes
+"$OUT/bin/java" -Xshare:dump -Xlog:cds=off > /dev/null
+coproc SERVER { exec "$OUT/bin/java" -XX:ArchiveClassesAtExit="$OUT/lib/server.jsa" -Xlog:cds=off -m $MAIN --port 0; }
+read -r line <&"${SERVER[0]}"
+kill "$SERVER_PID"
+wait "$SERVER_PID" || true
+
+# The launcher picks the archive up without any flags
+cat > "$OUT/bin/chess-server" <<'LAUNCHER'
+#!/bin/sh
+DIR=`dirname $0`
+exec $DIR/java -XX:SharedArchiveFile=$DIR/../lib/server.jsa -Xshare:auto -m com.goldthumb.chess.net/com.goldthumb.chess.net.GameServer "$@"
+LAUNCHER
+echo "Server image in $OUT"
@@ -0,0 +1,651 @@
+package com.goldthumb.chess.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.goldthumb.chess.ChessModel;
+import com.goldthumb.chess.GameResult;
+import com.goldthumb.chess.Move;
+import com.goldthumb.chess.Player;
+
+// Headless server hosting any number of two-player games on one selector
+// thread. Clients connect with WireConnection.connect and send PLAY, are
+// paired in arrival order and receive a START frame with their colour and
+// the game id. Every move is checked against the server's own board before
+// it is forwarded; a move out of turn, an illegal move or a wrong position
+// key forfeits the game.
+//
+// Any number of spectators can WATCH a game. Moves for them are encoded once
+// per game into a shared buffer and written to every spectator at the end of
+// the selector tick, so several moves go out in one write. A spectator whose
+// output buffer cannot take the batch misses it and, once its buffer has
+// drained, gets a POSITION with the current board instead.
+//
+// A player whose connection drops keeps its seat for a while and can RESUME
+// with the session id from START on a new connection. The game's ChessModel
+// doubles as its move log: the player gets only the moves played since the
+// ply it reports, or a POSITION when it is too far behind, so a burst of
+// reconnects costs a few small frames each.
+//
+// Each connection holds two small buffers and each game one ChessModel, and a
+// player that stops reading is dropped once its output buffer is full, so
+// memory stays bounded by the connection limit.
+//
+//   GameServer [--port N] [--max-connections N]
+public final class GameServer implements Closeable {
+    public static final int DEFAULT_PORT = 50000;
+    public static final int DEFAULT_MAX_CONNECTIONS = 10_000;
+
+    private static final long HANDSHAKE_MILLIS = 5000;
+    private static final long SWEEP_MILLIS = 1000;
+    // How long a disconnected player keeps its seat
+    private static final long RECONNECT_MILLIS = 60_000;
+    // Beyond this many missed moves a RESUME gets a POSITION instead
+    private static final int MAX_RESUME_MOVES = 32;
+    // Clients only send HELLO and moves
+    private static final int IN_BYTES = 256;
+    private static final int OUT_BYTES = 1024;
+    private static final byte[] HELLO_LINE = (WireProtocol.HELLO + "\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final Selector selector;
+    private final ServerSocketChannel listener;
+    private final int maxConnections;
+    private int connectionCount;
+    private Client waiting;
+    private volatile boolean running = true;
+    private final Map<Integer, Game> games = new HashMap<>();
+    private final Map<Long, Game> sessions = new HashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private int nextGameId = 1;
+    // Games with spectator frames waiting for the end of the tick
+    private final List<Game> pendingBroadcasts = new ArrayList<>();
+
+    private final LongAdder gamesStarted = new LongAdder();
+    private final LongAdder gamesFinished = new LongAdder();
+    private final LongAdder movesPlayed = new LongAdder();
+    private final LongAdder spectatorResyncs = new LongAdder();
+    private final LongAdder resumes = new LongAdder();
+    private final LongAdder forfeits = new LongAdder();
+    private final LongAdder gamesAbandoned = new LongAdder();
+
+    private static final class Client {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final long connectedAt;
+        // Received bytes not yet decoded lie between position and limit
+        final ByteBuffer in = ByteBuffer.allocate(IN_BYTES).flip();
+        final ByteBuffer out = ByteBuffer.allocate(OUT_BYTES);
+        boolean greeted;
+        boolean closing;
+        int sendSequence;
+        int receiveSequence;
+        Game game;
+        Player player;
+        Game watching;
+        // Skips broadcasts until it has been sent a fresh POSITION
+        boolean resync;
+
+        Client(SocketChannel channel, SelectionKey key, long connectedAt) {
+            this.channel = channel;
+            this.key = key;
+            this.connectedAt = connectedAt;
+        }
+    }
+
+    private static final class Game {
+        final int id;
+        final ChessModel model = new ChessModel();
+        // Indexed by Player ordinal; null while a player is disconnected
+        final Client[] players = new Client[2];
+        final long[] sessionIds = new long[2];
+        final long[] disconnectedAt = new long[2];
+        boolean over;
+
+        final List<Client> spectators = new ArrayList<>();
+        // Frames for the spectators encoded during the current tick
+        final ByteBuffer broadcast = ByteBuffer.allocate(OUT_BYTES);
+        // Sequence number of the next broadcast frame
+        int broadcastSequence;
+        // The broadcast buffer holds frames that have not been published yet
+        boolean pending;
+
+        Game(int id) {
+            this.id = id;
+            model.reset();
+        }
+    }
+
+    public GameServer(int port, int maxConnections) throws IOException {
+        this.maxConnections = maxConnections;
+        this.selector = Selector.open();
+        this.listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(port), 1024);
+        listener.configureBlocking(false);
+        listener.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) listener.getLocalAddress()).getPort();
+    }
+
+    public long getGamesStarted() {
+        return gamesStarted.sum();
+    }
+
+    public long getGamesFinished() {
+        return gamesFinished.sum();
+    }
+
+    public long getMovesPlayed() {
+        return movesPlayed.sum();
+    }
+
+    public long getSpectatorResyncs() {
+        return spectatorResyncs.sum();
+    }
+
+    public long getResumes() {
+        return resumes.sum();
+    }
+
+    // Games lost by an illegal move or a move sent with the wrong position key
+    public long getForfeits() {
+        return forfeits.sum();
+    }
+
+    // Games ended because a player did not reconnect in time
+    public long getGamesAbandoned() {
+        return gamesAbandoned.sum();
+    }
+
+    // Serves clients on the calling thread until close()
+    public void run() throws IOException {
+        long nextSweep = System.currentTimeMillis() + SWEEP_MILLIS;
+        while (running) {
+            selector.select(SWEEP_MILLIS);
+            for (SelectionKey key : selector.selectedKeys()) {
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    try {
+                        accept();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    continue;
+                }
+                Client client = (Client) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        read(client);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(client);
+                    }
+                } catch (IOException e) {
+                    disconnect(client, e.getMessage());
+                } catch (RuntimeException e) {
+                    // A bug triggered by one client must not stop the server for everyone else
+                    e.printStackTrace();
+                    disconnect(client, e.toString());
+                }
+            }
+            selector.selectedKeys().clear();
+            publishBroadcasts();
+
+            long now = System.currentTimeMillis();
+            if (now >= nextSweep) {
+                dropSilentClients(now);
+                expireSeats(now);
+                nextSweep = now + SWEEP_MILLIS;
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = listener.accept()) != null) {
+            if (connectionCount >= maxConnections) {
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Client(channel, key, System.currentTimeMillis()));
+            connectionCount++;
+        }
+    }
+
+    private void read(Client client) throws IOException {
+        ByteBuffer in = client.in;
+        if (in.remaining() == in.capacity()) {
+            throw new ProtocolException("Message longer than " + in.capacity() + " bytes");
+        }
+        in.compact();
+        int read = client.channel.read(in);
+        in.flip();
+        if (read < 0) {
+            disconnect(client, "closed by client");
+            return;
+        }
+
+        if (!client.greeted) {
+            if (in.remaining() < HELLO_LINE.length) {
+                return;
+            }
+            for (int i = 0; i < HELLO_LINE.length; i++) {
+                if (in.get(in.position() + i) != HELLO_LINE[i]) {
+                    throw new ProtocolException("Client does not speak the binary protocol");
+                }
+            }
+            in.position(in.position() + HELLO_LINE.length);
+            client.greeted = true;
+            client.out.put(HELLO_LINE);
+            flush(client);
+        }
+
+        int length;
+        while (client.key.isValid() && (length = WireProtocol.frameLength(in)) > 0) {
+            int frame = in.position();
+            in.position(frame + length);
+            WireProtocol.checkLength(in, frame, length);
+            int sequence = WireProtocol.sequence(in, frame);
+            if (sequence != client.receiveSequence) {
+                throw new ProtocolException("Expected frame " + client.receiveSequence + " but got " + sequence);
+            }
+            client.receiveSequence++;
+            switch (WireProtocol.type(in, frame)) {
+                case WireProtocol.PLAY:
+                    pair(client);
+                    break;
+                case WireProtocol.WATCH:
+                    watch(client, WireProtocol.watchGameId(in, frame));
+                    break;
+                case WireProtocol.RESUME:
+                    resume(client, WireProtocol.resumeSessionId(in, frame), WireProtocol.resumePly(in, frame));
+                    break;
+                case WireProtocol.MOVE:
+                    playMove(client, WireProtocol.move(in, frame), WireProtocol.positionKey(in, frame));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void pair(Client client) throws ProtocolException {
+        if (client.game != null || client.watching != null || waiting == client) {
+            throw new ProtocolException("PLAY from a client that is already playing or watching");
+        }
+        if (waiting == null) {
+            waiting = client;
+            return;
+        }
+        Game game = new Game(nextGameId++);
+        games.put(game.id, game);
+        game.players[Player.WHITE.ordinal()] = waiting;
+        game.players[Player.BLACK.ordinal()] = client;
+        waiting = null;
+        gamesStarted.increment();
+
+        for (Player player : Player.values()) {
+            Client seat = game.players[player.ordinal()];
+            long sessionId = newSessionId();
+            sessions.put(sessionId, game);
+            game.sessionIds[player.ordinal()] = sessionId;
+            seat.game = game;
+            seat.player = player;
+            ByteBuffer out = reserve(seat, WireProtocol.START_FRAME_BYTES);
+            if (out != null) {
+                WireProtocol.putStart(out, WireProtocol.START, seat.sendSequence++, player, game.id, sessionId);
+                flush(seat);
+            }
+        }
+    }
+
+    private long newSessionId() {
+        long sessionId;
+        do {
+            sessionId = random.nextLong();
+        } while (sessionId == 0 || sessions.containsKey(sessionId));
+        return sessionId;
+    }
+
+    // Seats client in the game of the session and sends it what it missed since ply
+    private void resume(Client client, long sessionId, int ply) throws ProtocolException {
+        if (client.game != null || client.watching != null || waiting == client) {
+            throw new ProtocolException("RESUME from a client that is already playing or watching");
+        }
+        Game game = sessions.get(sessionId);
+        if (game == null) {
+            ByteBuffer out = reserve(client, WireProtocol.BYTE_FRAME_BYTES);
+            if (out != null) {
+                WireProtocol.putEnd(out, client.sendSequence++, GameResult.UNKNOWN);
+                client.closing = true;
+                flush(client);
+            }
+            return;
+        }
+        Player player = game.sessionIds[Player.WHITE.ordinal()] == sessionId ? Player.WHITE : Player.BLACK;
+        Client previous = game.players[player.ordinal()];
+        if (previous != null) {
+            // The old connection has not noticed it is dead yet
+            previous.game = null;
+            close(previous);
+        }
+        game.players[player.ordinal()] = client;
+        game.disconnectedAt[player.ordinal()] = 0;
+        client.game = game;
+        client.player = player;
+        resumes.increment();
+
+        ChessModel model = game.model;
+        int missing = model.getPly() - ply;
+        boolean snapshot = missing < 0 || missing > MAX_RESUME_MOVES;
+        ByteBuffer out = reserve(client, WireProtocol.START_FRAME_BYTES
+                + (snapshot ? WireProtocol.MAX_POSITION_FRAME_BYTES : missing * WireProtocol.MOVE_FRAME_BYTES));
+        if (out == null) {
+            return;
+        }
+        WireProtocol.putStart(out, WireProtocol.RESUMED, client.sendSequence++, player, game.id, sessionId);
+        if (snapshot) {
+            WireProtocol.putPosition(out, client.sendSequence++, model.getPly(),
+                    model.appendFen(new StringBuilder(96)));
+        } else {
+            for (int i = ply; i < model.getPly(); i++) {
+                WireProtocol.putMove(out, client.sendSequence++, model.moveAt(i), model.keyAt(i + 1));
+            }
+        }
+        flush(client);
+    }
+
+    private void playMove(Client client, int move, long positionKey) throws IOException {
+        Game game = client.game;
+        if (game == null || game.over) {
+            throw new ProtocolException("Move outside of a game");
+        }
+        ChessModel model = game.model;
+        if (model.getPlayerInTurn() != client.player || !model.isLegalMove(move)) {
+            forfeit(game, client, "illegal move " + Move.toString(move));
+            return;
+        }
+        model.makeMove(move);
+        if (model.positionKey() != positionKey) {
+            forfeit(game, client, "position out of sync after " + Move.toString(move));
+            return;
+        }
+        movesPlayed.increment();
+
+        // A disconnected opponent catches up when it resumes
+        Client opponent = game.players[client.player.opposite().ordinal()];
+        ByteBuffer out = opponent == null ? null : reserve(opponent, WireProtocol.MOVE_FRAME_BYTES);
+        if (out != null) {
+            WireProtocol.putMove(out, opponent.sendSequence++, move, model.positionKey());
+            flush(opponent);
+        }
+        if (!game.spectators.isEmpty()) {
+            WireProtocol.putMove(broadcastBuffer(game, WireProtocol.MOVE_FRAME_BYTES),
+                    game.broadcastSequence++, move, model.positionKey());
+        }
+
+        GameResult result = GameResult.of(model);
+        if (result != GameResult.UNKNOWN && !game.over) {
+            end(game, result);
+        }
+    }
+
+    private void forfeit(Game game, Client loser, String reason) {
+        forfeits.increment();
+        System.err.println("Game " + game.id + " forfeited by " + loser.player + ": " + reason);
+        end(game, loser.player == Player.WHITE ? GameResult.BLACK_WINS : GameResult.WHITE_WINS);
+    }
+
+    // Sends the result to both players and the spectators and closes their connections
+    // once it is written
+    private void end(Game game, GameResult result) {
+        game.over = true;
+        games.remove(game.id);
+        sessions.remove(game.sessionIds[0]);
+        sessions.remove(game.sessionIds[1]);
+        gamesFinished.increment();
+        if (!game.spectators.isEmpty()) {
+            WireProtocol.putEnd(broadcastBuffer(game, WireProtocol.BYTE_FRAME_BYTES), game.broadcastSequence++, result);
+        }
+        for (Client client : game.players) {
+            ByteBuffer out = client == null ? null : reserve(client, WireProtocol.BYTE_FRAME_BYTES);
+            if (out != null) {
+                WireProtocol.putEnd(out, client.sendSequence++, result);
+                client.closing = true;
+                flush(client);
+            }
+        }
+    }
+
+    private void watch(Client client, int gameId) throws ProtocolException {
+        if (client.game != null || client.watching != null || waiting == client) {
+            throw new ProtocolException("WATCH from a client that is already playing or watching");
+        }
+        Game game = games.get(gameId);
+        if (game == null) {
+            ByteBuffer out = reserve(client, WireProtocol.BYTE_FRAME_BYTES);
+            if (out != null) {
+                WireProtocol.putEnd(out, client.sendSequence++, GameResult.UNKNOWN);
+                client.closing = true;
+                flush(client);
+            }
+            return;
+        }
+        client.watching = game;
+        client.resync = true;
+        game.spectators.add(client);
+        sendPosition(client);
+    }
+
+    // The game's broadcast buffer with room for bytes more, publishing it early if need be
+    private ByteBuffer broadcastBuffer(Game game, int bytes) {
+        if (game.broadcast.remaining() < bytes) {
+            publish(game);
+        }
+        if (!game.pending) {
+            game.pending = true;
+            pendingBroadcasts.add(game);
+        }
+        return game.broadcast;
+    }
+
+    private void publishBroadcasts() {
+        for (Game game : pendingBroadcasts) {
+            publish(game);
+        }
+        pendingBroadcasts.clear();
+    }
+
+    // Writes the frames encoded for a game since the last tick to all of its spectators
+    private void publish(Game game) {
+        ByteBuffer frames = game.broadcast.flip();
+        game.pending = false;
+        // Backwards, as a spectator that fails to write removes itself
+        for (int i = game.spectators.size() - 1; i >= 0; i--) {
+            Client spectator = game.spectators.get(i);
+            if (spectator.resync) {
+                // A POSITION of the current board covers these frames too
+                sendPosition(spectator);
+            } else if (spectator.out.remaining() < frames.remaining()) {
+                spectator.resync = true;
+                spectatorResyncs.increment();
+            } else {
+                spectator.out.put(frames.duplicate());
+                flush(spectator);
+            }
+            if (game.over && !spectator.resync) {
+                spectator.closing = true;
+                flush(spectator);
+            }
+        }
+        frames.clear();
+    }
+
+    // Sends the current board to a spectator that is waiting for a resync, once everything
+    // queued for it has been written. Frames still pending would repeat moves the board
+    // already shows, so then publish sends it instead.
+    private void sendPosition(Client spectator) {
+        Game game = spectator.watching;
+        if (!spectator.key.isValid() || spectator.out.position() > 0 || game.pending) {
+            return;
+        }
+        StringBuilder fen = game.model.appendFen(new StringBuilder(96));
+        WireProtocol.putPosition(spectator.out, game.broadcastSequence - 1, game.model.getPly(), fen);
+        spectator.resync = false;
+        spectator.closing = game.over;
+        flush(spectator);
+    }
+
+    // The client's output buffer if it has room for bytes more, otherwise null. A client
+    // that has let it fill up is not reading and is dropped.
+    private ByteBuffer reserve(Client client, int bytes) {
+        if (!client.key.isValid()) {
+            return null;
+        }
+        if (client.out.remaining() < bytes) {
+            disconnect(client, "output buffer full");
+            return null;
+        }
+        return client.out;
+    }
+
+    // Writes what the socket takes now; the selector sends the rest when it can
+    private void flush(Client client) {
+        ByteBuffer out = client.out.flip();
+        try {
+            client.channel.write(out);
+        } catch (IOException e) {
+            out.clear();
+            disconnect(client, e.getMessage());
+            return;
+        }
+        out.compact();
+        if (out.position() > 0) {
+            client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else if (client.resync) {
+            sendPosition(client);
+        } else if (client.closing) {
+            close(client);
+        } else {
+            client.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void disconnect(Client client, String reason) {
+        if (!client.key.isValid()) {
+            return;
+        }
+        close(client);
+        if (waiting == client) {
+            waiting = null;
+        }
+        if (client.watching != null) {
+            client.watching.spectators.remove(client);
+        }
+        Game game = client.game;
+        if (game != null && !game.over) {
+            // The seat stays open for a RESUME
+            game.players[client.player.ordinal()] = null;
+            game.disconnectedAt[client.player.ordinal()] = System.currentTimeMillis();
+        }
+    }
+
+    private void close(Client client) {
+        client.key.cancel();
+        connectionCount--;
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Text-only clients never say HELLO; they would otherwise hold a connection forever
+    private void dropSilentClients(long now) {
+        for (SelectionKey key : selector.keys()) {
+            Client client = (Client) key.attachment();
+            if (client != null && key.isValid() && !client.greeted && now - client.connectedAt > HANDSHAKE_MILLIS) {
+                disconnect(client, "no handshake");
+            }
+        }
+    }
+
+    // Players that have not resumed in time lose; if both are gone the game ends undecided
+    private void expireSeats(long now) {
+        List<Game> expired = null;
+        for (Game game : games.values()) {
+            for (long disconnectedAt : game.disconnectedAt) {
+                if (disconnectedAt != 0 && now - disconnectedAt > RECONNECT_MILLIS) {
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(game);
+                    break;
+                }
+            }
+        }
+        if (expired == null) {
+            return;
+        }
+        for (Game game : expired) {
+            boolean whiteGone = game.players[Player.WHITE.ordinal()] == null;
+            boolean blackGone = game.players[Player.BLACK.ordinal()] == null;
+            gamesAbandoned.increment();
+            System.err.println("Game " + game.id + " abandoned");
+            end(game, whiteGone && blackGone ? GameResult.UNKNOWN
+                    : whiteGone ? GameResult.BLACK_WINS : GameResult.WHITE_WINS);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-connections":
+                    maxConnections = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.out.println("Usage: GameServer [--port N] [--max-connections N]");
+                    return;
+            }
+        }
+        try (GameServer server = new GameServer(port, maxConnections)) {
+            System.out.println("Game server listening on port " + server.getPort());
+            server.run();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.goldthumb.chess.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.goldthumb.chess.GameResult;
+import com.goldthumb.chess.Move;
+import com.goldthumb.chess.Player;
+
+// One end of a two-player game connection. The connecting side sends
+// WireProtocol.HELLO and the accepting side answers with the same line; from
+// then on both speak binary frames. If no answer arrives within the handshake
+// time the peer is an older build and the text format is used instead.
+//
+// One thread may receive while another sends.
+public final class WireConnection implements Closeable {
+    // Returned by receiveMove when a GameServer has paired this client into a new game
+    public static final int STARTED = -2;
+    // Returned by receiveMove when a GameServer has sent the board of the game
+    public static final int POSITION = -3;
+    // Returned by receiveMove when a GameServer has accepted a RESUME
+    public static final int RESUMED = -4;
+
+    private static final long HANDSHAKE_MILLIS = 3000;
+    private static final byte[] HELLO_LINE = (WireProtocol.HELLO + "\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final SocketChannel channel;
+    // Received bytes not yet decoded lie between position and limit
+    private final ByteBuffer in = ByteBuffer.allocateDirect(WireProtocol.MAX_FRAME_BYTES).flip();
+    private final ByteBuffer out = ByteBuffer.allocateDirect(WireProtocol.MAX_FRAME_BYTES);
+    private boolean binary;
+    private int sendSequence;
+    private int receiveSequence;
+    private long positionKey;
+    private volatile Player player;
+    private volatile int gameId = -1;
+    private volatile long sessionId;
+    // Plies of the server game this end has seen, as the moves were sent and received
+    private volatile int ply;
+    private volatile boolean watching;
+    private String positionFen;
+    private int positionPly;
+    private volatile GameResult result = GameResult.UNKNOWN;
+    private volatile boolean ended;
+
+    private WireConnection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    // Client side: offer the binary protocol and wait for the server to accept it
+    public static WireConnection connect(SocketChannel channel) throws IOException {
+        WireConnection connection = new WireConnection(channel);
+        connection.write(ByteBuffer.wrap(HELLO_LINE));
+        connection.binary = connection.readHello();
+        return connection;
+    }
+
+    // Server side: switch to binary if the client offers it
+    public static WireConnection accept(SocketChannel channel) throws IOException {
+        WireConnection connection = new WireConnection(channel);
+        if (connection.readHello()) {
+            connection.write(ByteBuffer.wrap(HELLO_LINE));
+            connection.binary = true;
+        }
+        return connection;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    // Position key the peer sent with the last received move; only set in binary mode
+    public long getPositionKey() {
+        return positionKey;
+    }
+
+    // The colour a GameServer assigned with the last START, null between two players
+    public Player getPlayer() {
+        return player;
+    }
+
+    // Id of the GameServer game played or watched, -1 before START or between two players
+    public int getGameId() {
+        return gameId;
+    }
+
+    // Session of the GameServer game played, 0 if none; RESUME takes it over on a new connection
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    public boolean isWatching() {
+        return watching;
+    }
+
+    // FEN and ply count of the last POSITION
+    public String getPositionFen() {
+        return positionFen;
+    }
+
+    public int getPositionPly() {
+        return positionPly;
+    }
+
+    // True once a GameServer has sent END; the game cannot be resumed then
+    public boolean isEnded() {
+        return ended;
+    }
+
+    // The result a GameServer sent with END
+    public GameResult getResult() {
+        return result;
+    }
+
+    // Asks a GameServer for an opponent; a peer ignores it
+    public synchronized void sendPlay() throws IOException {
+        out.clear();
+        WireProtocol.putPlay(out, sendSequence++);
+        write(out.flip());
+    }
+
+    // Subscribes to a GameServer game as a spectator
+    public synchronized void sendWatch(int gameId) throws IOException {
+        if (!binary) {
+            throw new ProtocolException("Watching needs the binary protocol");
+        }
+        out.clear();
+        WireProtocol.putWatch(out, sendSequence++, gameId);
+        write(out.flip());
+        this.gameId = gameId;
+        watching = true;
+    }
+
+    // Continues a GameServer game after a lost connection, from the ply given
+    public synchronized void sendResume(long sessionId, int ply) throws IOException {
+        if (!binary) {
+            throw new ProtocolException("Resuming needs the binary protocol");
+        }
+        out.clear();
+        WireProtocol.putResume(out, sendSequence++, sessionId, ply);
+        write(out.flip());
+        this.sessionId = sessionId;
+        this.ply = ply;
+    }
+
+    // The move counts towards getPly() only once it is written, so a RESUME after a
+    // failed write asks for the moves from where the server really is
+    public synchronized void sendMove(int move, long positionKeyAfter) throws IOException {
+        out.clear();
+        if (binary) {
+            WireProtocol.putMove(out, sendSequence++, move, positionKeyAfter);
+        } else {
+            WireProtocol.putTextMove(out, move);
+        }
+        write(out.flip());
+        ply++;
+    }
+
+    // Blocks until the next move, STARTED or POSITION arrives; -1 once the game has
+    // ended or the peer has closed the connection
+    public int receiveMove() throws IOException {
+        while (true) {
+            if (binary) {
+                int length = WireProtocol.frameLength(in);
+                if (length > 0) {
+                    int frame = in.position();
+                    in.position(frame + length);
+                    WireProtocol.checkLength(in, frame, length);
+                    int sequence = WireProtocol.sequence(in, frame);
+                    if (WireProtocol.type(in, frame) == WireProtocol.POSITION) {
+                        receiveSequence = sequence + 1;
+                        positionPly = WireProtocol.positionPly(in, frame);
+                        positionFen = WireProtocol.positionFen(in, frame, length);
+                        ply = positionPly;
+                        return POSITION;
+                    }
+                    if (sequence != receiveSequence) {
+                        throw new ProtocolException("Expected frame " + receiveSequence + " but got " + sequence);
+                    }
+                    receiveSequence++;
+                    switch (WireProtocol.type(in, frame)) {
+                        case WireProtocol.MOVE:
+                            positionKey = WireProtocol.positionKey(in, frame);
+                            ply++;
+                            return WireProtocol.move(in, frame);
+                        case WireProtocol.START:
+                        case WireProtocol.RESUMED:
+                            player = Player.values()[WireProtocol.payloadByte(in, frame) & 1];
+                            gameId = WireProtocol.startGameId(in, frame);
+                            sessionId = WireProtocol.startSessionId(in, frame);
+                            if (WireProtocol.type(in, frame) == WireProtocol.RESUMED) {
+                                return RESUMED;
+                            }
+                            ply = 0;
+                            return STARTED;
+                        case WireProtocol.END:
+                            result = GameResult.values()[WireProtocol.payloadByte(in, frame) % GameResult.values().length];
+                            ended = true;
+                            return -1;
+                        default:
+                            // Frame types added by later versions are skipped
+                            continue;
+                    }
+                }
+            } else {
+                int newline = indexOfNewline();
+                if (newline >= 0) {
+                    int move = WireProtocol.parseTextMove(in, in.position(), newline);
+                    in.position(newline + 1);
+                    if (move != Move.NONE) {
+                        return move;
+                    }
+                    continue;
+                }
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+    }
+
+    // Waits up to the handshake time for the first line and consumes it if it is HELLO.
+    // Anything else stays buffered for receiveMove.
+    private boolean readHello() throws IOException {
+        long deadline = System.currentTimeMillis() + HANDSHAKE_MILLIS;
+        channel.configureBlocking(false);
+        try (Selector selector = Selector.open()) {
+            channel.register(selector, SelectionKey.OP_READ);
+            while (indexOfNewline() < 0 && in.remaining() < HELLO_LINE.length) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                if (selector.select(remaining) > 0) {
+                    selector.selectedKeys().clear();
+                    if (!fill()) {
+                        break;
+                    }
+                }
+            }
+        }
+        // Closing the selector deregistered the channel
+        channel.configureBlocking(true);
+
+        if (in.remaining() < HELLO_LINE.length) {
+            return false;
+        }
+        for (int i = 0; i < HELLO_LINE.length; i++) {
+            if (in.get(in.position() + i) != HELLO_LINE[i]) {
+                return false;
+            }
+        }
+        in.position(in.position() + HELLO_LINE.length);
+        return true;
+    }
+
+    private int indexOfNewline() {
+        for (int i = in.position(); i < in.limit(); i++) {
+            if (in.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean fill() throws IOException {
+        if (in.remaining() == in.capacity()) {
+            throw new ProtocolException("Message longer than " + in.capacity() + " bytes");
+        }
+        in.compact();
+        int read = channel.read(in);
+        in.flip();
+        return read >= 0;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
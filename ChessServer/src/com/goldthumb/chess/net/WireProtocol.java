@@ -0,0 +1,239 @@
+package com.goldthumb.chess.net;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+import com.goldthumb.chess.Bitboards;
+import com.goldthumb.chess.GameResult;
+import com.goldthumb.chess.Move;
+import com.goldthumb.chess.Player;
+
+// Binary frames exchanged by two connected games. Every frame starts with
+//   length (4, bytes after this field), type (1), sequence number (4)
+// followed by a payload that depends on the type. A MOVE carries the packed
+// 16-bit move and the position key after it, so the receiver notices a board
+// that has gone out of sync as soon as it plays the move.
+//
+// With a GameServer a client first sends PLAY to be paired or WATCH with a
+// game id to follow a game. Players get START with their colour and the game
+// id, spectators a POSITION with the ply and FEN of the game so far, and both
+// get END with the GameResult ordinal when the game is over.
+//
+// START also carries a session id. A player that lost its connection opens a
+// new one and sends RESUME with the session id and the number of plies it has;
+// the server answers RESUMED, then the moves it missed, or a POSITION when it
+// missed too many.
+//
+// Sequence numbers count the frames sent on a connection, except that a
+// POSITION restarts the count: the next frame follows its number.
+//
+// Frames are decoded in place with absolute reads; frame is the index of the
+// length field in the buffer.
+public final class WireProtocol {
+    public static final int VERSION = 1;
+
+    // Sent as the first line of a connection. A peer that only knows the text
+    // format reads it as the move 0,0,0,0, which it rejects as a no-op.
+    static final String HELLO = "0,0,0,0,binary/" + VERSION;
+
+    public static final byte MOVE = 1;
+    public static final byte START = 2;
+    public static final byte END = 3;
+    public static final byte PLAY = 4;
+    public static final byte WATCH = 5;
+    public static final byte POSITION = 6;
+    public static final byte RESUME = 7;
+    public static final byte RESUMED = 8;
+
+    static final int LENGTH_BYTES = 4;
+    static final int HEADER_BYTES = LENGTH_BYTES + 1 + 4;
+    static final int MOVE_FRAME_BYTES = HEADER_BYTES + 2 + 8;
+    static final int BYTE_FRAME_BYTES = HEADER_BYTES + 1;
+    // START and RESUMED
+    static final int START_FRAME_BYTES = HEADER_BYTES + 1 + 4 + 8;
+    static final int RESUME_FRAME_BYTES = HEADER_BYTES + 8 + 2;
+    static final int WATCH_FRAME_BYTES = HEADER_BYTES + 4;
+    // Ply and the longest FEN
+    static final int MAX_POSITION_FRAME_BYTES = HEADER_BYTES + 2 + 96;
+    static final int MAX_FRAME_BYTES = 4096;
+
+    private static final int TYPE_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 5;
+    private static final int PAYLOAD_OFFSET = HEADER_BYTES;
+
+    private WireProtocol() {
+    }
+
+    public static void putMove(ByteBuffer out, int sequence, int move, long positionKey) {
+        putHeader(out, MOVE, sequence, MOVE_FRAME_BYTES);
+        out.putShort((short) move);
+        out.putLong(positionKey);
+    }
+
+    // type is START or RESUMED
+    static void putStart(ByteBuffer out, byte type, int sequence, Player player, int gameId, long sessionId) {
+        putHeader(out, type, sequence, START_FRAME_BYTES);
+        out.put((byte) player.ordinal());
+        out.putInt(gameId);
+        out.putLong(sessionId);
+    }
+
+    static void putResume(ByteBuffer out, int sequence, long sessionId, int ply) {
+        putHeader(out, RESUME, sequence, RESUME_FRAME_BYTES);
+        out.putLong(sessionId);
+        out.putShort((short) ply);
+    }
+
+    static void putPlay(ByteBuffer out, int sequence) {
+        putHeader(out, PLAY, sequence, HEADER_BYTES);
+    }
+
+    static void putWatch(ByteBuffer out, int sequence, int gameId) {
+        putHeader(out, WATCH, sequence, WATCH_FRAME_BYTES);
+        out.putInt(gameId);
+    }
+
+    static void putPosition(ByteBuffer out, int sequence, int ply, CharSequence fen) {
+        putHeader(out, POSITION, sequence, HEADER_BYTES + 2 + fen.length());
+        out.putShort((short) ply);
+        for (int i = 0; i < fen.length(); i++) {
+            out.put((byte) fen.charAt(i));
+        }
+    }
+
+    static void putEnd(ByteBuffer out, int sequence, GameResult result) {
+        putHeader(out, END, sequence, BYTE_FRAME_BYTES);
+        out.put((byte) result.ordinal());
+    }
+
+    static void putHeader(ByteBuffer out, byte type, int sequence, int frameBytes) {
+        out.putInt(frameBytes - LENGTH_BYTES);
+        out.put(type);
+        out.putInt(sequence);
+    }
+
+    // Size of the complete frame at the buffer position, or 0 while more bytes are needed
+    public static int frameLength(ByteBuffer in) throws ProtocolException {
+        if (in.remaining() < LENGTH_BYTES) {
+            return 0;
+        }
+        int length = LENGTH_BYTES + in.getInt(in.position());
+        if (length < HEADER_BYTES || length > MAX_FRAME_BYTES) {
+            throw new ProtocolException("Invalid frame length " + length);
+        }
+        return in.remaining() >= length ? length : 0;
+    }
+
+    // Rejects a frame whose length does not fit its type. Unknown types pass, as
+    // receivers skip the frame types added by later versions.
+    static void checkLength(ByteBuffer in, int frame, int length) throws ProtocolException {
+        byte type = type(in, frame);
+        int expected;
+        switch (type) {
+            case MOVE: expected = MOVE_FRAME_BYTES; break;
+            case START: case RESUMED: expected = START_FRAME_BYTES; break;
+            case END: expected = BYTE_FRAME_BYTES; break;
+            case PLAY: expected = HEADER_BYTES; break;
+            case WATCH: expected = WATCH_FRAME_BYTES; break;
+            case RESUME: expected = RESUME_FRAME_BYTES; break;
+            case POSITION:
+                if (length < HEADER_BYTES + 2 || length > MAX_POSITION_FRAME_BYTES) {
+                    throw new ProtocolException("Invalid POSITION frame length " + length);
+                }
+                return;
+            default: return;
+        }
+        if (length != expected) {
+            throw new ProtocolException("Invalid length " + length + " for frame type " + type);
+        }
+    }
+
+    public static byte type(ByteBuffer in, int frame) {
+        return in.get(frame + TYPE_OFFSET);
+    }
+
+    public static int sequence(ByteBuffer in, int frame) {
+        return in.getInt(frame + SEQUENCE_OFFSET);
+    }
+
+    public static int move(ByteBuffer in, int frame) throws ProtocolException {
+        int move = Short.toUnsignedInt(in.getShort(frame + PAYLOAD_OFFSET));
+        if (!Move.isWellFormed(move)) {
+            throw new ProtocolException("Invalid promotion in move " + move);
+        }
+        return move;
+    }
+
+    public static long positionKey(ByteBuffer in, int frame) {
+        return in.getLong(frame + PAYLOAD_OFFSET + 2);
+    }
+
+    // Payload of START and END
+    static int payloadByte(ByteBuffer in, int frame) {
+        return Byte.toUnsignedInt(in.get(frame + PAYLOAD_OFFSET));
+    }
+
+    static int startGameId(ByteBuffer in, int frame) {
+        return in.getInt(frame + PAYLOAD_OFFSET + 1);
+    }
+
+    static long startSessionId(ByteBuffer in, int frame) {
+        return in.getLong(frame + PAYLOAD_OFFSET + 5);
+    }
+
+    static long resumeSessionId(ByteBuffer in, int frame) {
+        return in.getLong(frame + PAYLOAD_OFFSET);
+    }
+
+    static int resumePly(ByteBuffer in, int frame) {
+        return Short.toUnsignedInt(in.getShort(frame + PAYLOAD_OFFSET + 8));
+    }
+
+    static int watchGameId(ByteBuffer in, int frame) {
+        return in.getInt(frame + PAYLOAD_OFFSET);
+    }
+
+    static int positionPly(ByteBuffer in, int frame) {
+        return Short.toUnsignedInt(in.getShort(frame + PAYLOAD_OFFSET));
+    }
+
+    static String positionFen(ByteBuffer in, int frame, int length) {
+        StringBuilder fen = new StringBuilder(length);
+        for (int i = frame + PAYLOAD_OFFSET + 2; i < frame + length; i++) {
+            fen.append((char) in.get(i));
+        }
+        return fen.toString();
+    }
+
+    // The text format: fromCol,fromRow,toCol,toRow on one line
+    static void putTextMove(ByteBuffer out, int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        out.put((byte) ('0' + Bitboards.col(from))).put((byte) ',');
+        out.put((byte) ('0' + Bitboards.row(from))).put((byte) ',');
+        out.put((byte) ('0' + Bitboards.col(to))).put((byte) ',');
+        out.put((byte) ('0' + Bitboards.row(to))).put((byte) '\n');
+    }
+
+    // Parses the text move in[start, end); anything after the fourth number is ignored
+    static int parseTextMove(ByteBuffer in, int start, int end) throws ProtocolException {
+        // Each coordinate must be 0-7, so the four of them pack into 3 bits apiece
+        int packed = 0;
+        int i = start;
+        for (int n = 0; n < 4; n++) {
+            int value = 0;
+            int digits = 0;
+            while (i < end && in.get(i) >= '0' && in.get(i) <= '9' && value < 8) {
+                value = value * 10 + in.get(i++) - '0';
+                digits++;
+            }
+            if (digits == 0 || value > 7 || (n < 3 && (i == end || in.get(i++) != ','))) {
+                throw new ProtocolException("Invalid text move at byte " + (i - start));
+            }
+            packed = packed << 3 | value;
+        }
+        int from = Bitboards.square((packed >>> 9) & 7, (packed >>> 6) & 7);
+        int to = Bitboards.square((packed >>> 3) & 7, packed & 7);
+        return Move.of(from, to);
+    }
+}
@@ -0,0 +1,5 @@
+// Wire protocol and the headless game server
+module com.goldthumb.chess.net {
+	requires transitive com.goldthumb.chess.core;
+	exports com.goldthumb.chess.net;
+}
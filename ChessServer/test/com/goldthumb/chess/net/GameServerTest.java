@@ -0,0 +1,174 @@
+package com.goldthumb.chess.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.goldthumb.chess.ChessModel;
+import com.goldthumb.chess.Move;
+import com.goldthumb.chess.Player;
+
+@Timeout(10)
+class GameServerTest {
+    private GameServer server;
+    private Thread thread;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new GameServer(0, 100);
+        thread = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        server.close();
+        thread.join();
+    }
+
+    private SocketChannel open() throws IOException {
+        return SocketChannel.open(new InetSocketAddress("localhost", server.getPort()));
+    }
+
+    // Sends HELLO and a frame of the type with frameBytes - HEADER_BYTES zeros as its payload
+    private SocketChannel sendFrame(byte type, int frameBytes) throws IOException {
+        SocketChannel channel = open();
+        ByteBuffer out = ByteBuffer.allocate(WireProtocol.MAX_FRAME_BYTES);
+        out.put((WireProtocol.HELLO + "\n").getBytes(StandardCharsets.US_ASCII));
+        WireProtocol.putHeader(out, type, 0, frameBytes);
+        out.position(out.position() + frameBytes - WireProtocol.HEADER_BYTES);
+        channel.write(out.flip());
+        return channel;
+    }
+
+    // True once the server has closed the connection, after reading whatever it sent
+    private static boolean closedByServer(SocketChannel channel) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(WireProtocol.MAX_FRAME_BYTES);
+        while (true) {
+            in.clear();
+            try {
+                if (channel.read(in) < 0) {
+                    return true;
+                }
+            } catch (IOException e) {
+                // Reset by the server
+                return true;
+            }
+        }
+    }
+
+    // Two clients paired into a game, white first; who is paired first is up to the server
+    private WireConnection[] pair() throws IOException {
+        WireConnection first = WireConnection.connect(open());
+        WireConnection second = WireConnection.connect(open());
+        first.sendPlay();
+        second.sendPlay();
+        assertEquals(WireConnection.STARTED, first.receiveMove());
+        assertEquals(WireConnection.STARTED, second.receiveMove());
+        assertNotEquals(first.getPlayer(), second.getPlayer());
+        return first.getPlayer() == Player.WHITE ? new WireConnection[] {first, second}
+                : new WireConnection[] {second, first};
+    }
+
+    private void assertServerStillPairs() throws IOException {
+        for (WireConnection connection : pair()) {
+            connection.close();
+        }
+    }
+
+    @Test
+    void dropsAClientSendingAShortMoveFrame() throws IOException {
+        // The move without its position key
+        try (SocketChannel channel = sendFrame(WireProtocol.MOVE, WireProtocol.HEADER_BYTES + 2)) {
+            assertTrue(closedByServer(channel));
+        }
+        assertServerStillPairs();
+    }
+
+    @Test
+    void dropsAClientSendingShortWatchAndResumeFrames() throws IOException {
+        for (byte type : new byte[] {WireProtocol.WATCH, WireProtocol.RESUME}) {
+            try (SocketChannel channel = sendFrame(type, WireProtocol.HEADER_BYTES + 2)) {
+                assertTrue(closedByServer(channel), "type " + type);
+            }
+        }
+        assertServerStillPairs();
+    }
+
+    @Test
+    void dropsAPlayerSendingABadPromotion() throws IOException {
+        WireConnection[] players = pair();
+        try (WireConnection white = players[0]; WireConnection black = players[1]) {
+            // e2e4 with promotion bits 7, which name no piece
+            white.sendMove(12 | 28 << 6 | 7 << 12, 0L);
+            assertEquals(-1, white.receiveMove());
+        }
+        assertEquals(0, server.getForfeits());
+        assertServerStillPairs();
+    }
+
+    @Test
+    void forfeitsAnIllegalMove() throws IOException {
+        WireConnection[] players = pair();
+        try (WireConnection white = players[0]; WireConnection black = players[1]) {
+            white.sendMove(Move.of(12, 36), 0L);
+            assertEquals(-1, black.receiveMove());
+            assertTrue(black.isEnded());
+            assertEquals("0-1", black.getResult().toString());
+        }
+        assertEquals(1, server.getForfeits());
+        assertServerStillPairs();
+    }
+
+    @Test
+    void resumesFromTheLastMoveWrittenAfterAFailedWrite() throws IOException {
+        ChessModel model = new ChessModel();
+        model.reset();
+        WireConnection[] players = pair();
+        try (WireConnection black = players[1]) {
+            WireConnection white = players[0];
+            int e4 = Move.of(12, 28);
+            model.makeMove(e4);
+            white.sendMove(e4, model.positionKey());
+            assertEquals(e4, black.receiveMove());
+            int e5 = Move.of(52, 36);
+            model.makeMove(e5);
+            black.sendMove(e5, model.positionKey());
+            assertEquals(e5, white.receiveMove());
+
+            // The connection drops before Nf3 gets out
+            white.close();
+            int nf3 = Move.of(6, 21);
+            model.makeMove(nf3);
+            assertThrows(IOException.class, () -> white.sendMove(nf3, model.positionKey()));
+            assertEquals(2, white.getPly());
+
+            try (WireConnection resumed = WireConnection.connect(open())) {
+                resumed.sendResume(white.getSessionId(), white.getPly());
+                assertEquals(WireConnection.RESUMED, resumed.receiveMove());
+                resumed.sendMove(nf3, model.positionKey());
+                assertEquals(nf3, black.receiveMove());
+                assertEquals(3, resumed.getPly());
+            }
+        }
+        assertEquals(0, server.getForfeits());
+    }
+}
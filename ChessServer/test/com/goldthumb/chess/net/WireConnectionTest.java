@@ -0,0 +1,87 @@
+package com.goldthumb.chess.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.goldthumb.chess.Move;
+
+class WireConnectionTest {
+    private ServerSocketChannel listener;
+
+    @BeforeEach
+    void listen() throws IOException {
+        listener = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        listener.close();
+    }
+
+    private SocketChannel connect() throws IOException {
+        return SocketChannel.open(listener.getLocalAddress());
+    }
+
+    @Test
+    void bothSidesSwitchToBinary() throws Exception {
+        CompletableFuture<WireConnection> accepted = CompletableFuture.supplyAsync(() -> {
+            try {
+                return WireConnection.accept(listener.accept());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        try (WireConnection client = WireConnection.connect(connect());
+                WireConnection server = accepted.get()) {
+            assertTrue(client.isBinary());
+            assertTrue(server.isBinary());
+
+            int move = Move.of(12, 28);
+            client.sendMove(move, 1234L);
+            assertEquals(move, server.receiveMove());
+            assertEquals(1234L, server.getPositionKey());
+        }
+    }
+
+    // An older build answers HELLO with a text move of its own, or not at all
+    @Test
+    void fallsBackToTextWithAnOlderPeer() throws Exception {
+        try (SocketChannel peer = connect(); SocketChannel channel = listener.accept()) {
+            peer.write(ByteBuffer.wrap("6,0,5,2\n".getBytes(StandardCharsets.US_ASCII)));
+            try (WireConnection server = WireConnection.accept(channel)) {
+                assertFalse(server.isBinary());
+                assertEquals(Move.of(6, 2 * 8 + 5), server.receiveMove());
+
+                server.sendMove(Move.of(52, 36), 0L);
+                ByteBuffer line = ByteBuffer.allocate(8);
+                while (line.hasRemaining() && peer.read(line) >= 0) {
+                }
+                assertEquals("4,6,4,4\n", new String(line.array(), StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    @Test
+    void skipsTheNoOpMoveAnOlderPeerEchoes() throws Exception {
+        try (SocketChannel peer = connect(); SocketChannel channel = listener.accept()) {
+            peer.write(ByteBuffer.wrap("0,0,0,0\n1,0,2,2\n".getBytes(StandardCharsets.US_ASCII)));
+            try (WireConnection server = WireConnection.accept(channel)) {
+                assertFalse(server.isBinary());
+                assertEquals(Move.of(1, 2 * 8 + 2), server.receiveMove());
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.goldthumb.chess.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.goldthumb.chess.Bitboards;
+import com.goldthumb.chess.GameResult;
+import com.goldthumb.chess.Move;
+import com.goldthumb.chess.Player;
+import com.goldthumb.chess.Rank;
+
+class WireProtocolTest {
+    private final ByteBuffer buffer = ByteBuffer.allocate(WireProtocol.MAX_FRAME_BYTES);
+
+    // The frame just written, checked like a receiver would; returns its length
+    private int frame() throws ProtocolException {
+        buffer.flip();
+        int length = WireProtocol.frameLength(buffer);
+        assertEquals(buffer.remaining(), length);
+        WireProtocol.checkLength(buffer, 0, length);
+        return length;
+    }
+
+    @Test
+    void roundTripsAMove() throws ProtocolException {
+        int move = Move.of(Bitboards.square(4, 6), Bitboards.square(4, 7), Rank.QUEEN);
+        WireProtocol.putMove(buffer, 7, move, 0x0123456789ABCDEFL);
+        assertEquals(WireProtocol.MOVE_FRAME_BYTES, frame());
+        assertEquals(WireProtocol.MOVE, WireProtocol.type(buffer, 0));
+        assertEquals(7, WireProtocol.sequence(buffer, 0));
+        assertEquals(move, WireProtocol.move(buffer, 0));
+        assertEquals(0x0123456789ABCDEFL, WireProtocol.positionKey(buffer, 0));
+    }
+
+    @Test
+    void roundTripsStartAndEnd() throws ProtocolException {
+        WireProtocol.putStart(buffer, WireProtocol.RESUMED, 1, Player.BLACK, 42, -5L);
+        assertEquals(WireProtocol.START_FRAME_BYTES, frame());
+        assertEquals(WireProtocol.RESUMED, WireProtocol.type(buffer, 0));
+        assertEquals(Player.BLACK.ordinal(), WireProtocol.payloadByte(buffer, 0));
+        assertEquals(42, WireProtocol.startGameId(buffer, 0));
+        assertEquals(-5L, WireProtocol.startSessionId(buffer, 0));
+
+        buffer.clear();
+        WireProtocol.putEnd(buffer, 2, GameResult.DRAW);
+        frame();
+        assertEquals(GameResult.DRAW.ordinal(), WireProtocol.payloadByte(buffer, 0));
+    }
+
+    @Test
+    void roundTripsResumeWatchAndPosition() throws ProtocolException {
+        WireProtocol.putResume(buffer, 3, 99L, 300);
+        frame();
+        assertEquals(99L, WireProtocol.resumeSessionId(buffer, 0));
+        assertEquals(300, WireProtocol.resumePly(buffer, 0));
+
+        buffer.clear();
+        WireProtocol.putWatch(buffer, 4, 17);
+        frame();
+        assertEquals(17, WireProtocol.watchGameId(buffer, 0));
+
+        buffer.clear();
+        String fen = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1";
+        WireProtocol.putPosition(buffer, 5, 1, fen);
+        int length = frame();
+        assertEquals(1, WireProtocol.positionPly(buffer, 0));
+        assertEquals(fen, WireProtocol.positionFen(buffer, 0, length));
+    }
+
+    @Test
+    void waitsForACompleteFrame() throws ProtocolException {
+        WireProtocol.putMove(buffer, 0, Move.of(12, 28), 1L);
+        buffer.flip();
+        for (int limit = 0; limit < WireProtocol.MOVE_FRAME_BYTES; limit++) {
+            buffer.limit(limit);
+            assertEquals(0, WireProtocol.frameLength(buffer));
+        }
+    }
+
+    @Test
+    void rejectsBadFrameLengths() {
+        buffer.putInt(-1).flip();
+        assertThrows(ProtocolException.class, () -> WireProtocol.frameLength(buffer));
+
+        buffer.clear();
+        buffer.putInt(WireProtocol.MAX_FRAME_BYTES).flip();
+        assertThrows(ProtocolException.class, () -> WireProtocol.frameLength(buffer));
+    }
+
+    @Test
+    void rejectsFramesTooShortForTheirType() {
+        for (byte type : new byte[] {WireProtocol.MOVE, WireProtocol.START, WireProtocol.END,
+                WireProtocol.WATCH, WireProtocol.RESUME, WireProtocol.RESUMED, WireProtocol.POSITION}) {
+            buffer.clear();
+            WireProtocol.putHeader(buffer, type, 0, WireProtocol.HEADER_BYTES);
+            assertThrows(ProtocolException.class,
+                    () -> WireProtocol.checkLength(buffer, 0, WireProtocol.HEADER_BYTES), "type " + type);
+        }
+        buffer.clear();
+        WireProtocol.putHeader(buffer, WireProtocol.PLAY, 0, WireProtocol.HEADER_BYTES + 1);
+        assertThrows(ProtocolException.class, () -> WireProtocol.checkLength(buffer, 0, WireProtocol.HEADER_BYTES + 1));
+    }
+
+    @Test
+    void skipsUnknownFrameTypes() throws ProtocolException {
+        WireProtocol.putHeader(buffer, (byte) 100, 0, WireProtocol.HEADER_BYTES + 3);
+        WireProtocol.checkLength(buffer, 0, WireProtocol.HEADER_BYTES + 3);
+    }
+
+    @Test
+    void rejectsBadPromotions() {
+        for (int promotion : new int[] {5, 6, 7, 15}) {
+            WireProtocol.putMove(buffer, 0, 12 | 28 << 6 | promotion << 12, 0L);
+            assertThrows(ProtocolException.class, () -> WireProtocol.move(buffer, 0), "promotion " + promotion);
+            buffer.clear();
+        }
+    }
+
+    @Test
+    void roundTripsATextMove() throws ProtocolException {
+        int move = Move.of(Bitboards.square(6, 0), Bitboards.square(5, 2));
+        WireProtocol.putTextMove(buffer, move);
+        buffer.flip();
+        assertEquals("6,0,5,2\n", StandardCharsets.US_ASCII.decode(buffer.duplicate()).toString());
+        assertEquals(move, WireProtocol.parseTextMove(buffer, 0, buffer.limit() - 1));
+    }
+
+    @Test
+    void rejectsMalformedTextMoves() {
+        for (String text : new String[] {"", "1,2,3", "1,2,3,8", "1;2,3,4", "a,b,c,d", "12,2,3,4"}) {
+            ByteBuffer in = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+            assertThrows(ProtocolException.class, () -> WireProtocol.parseTextMove(in, 0, in.limit()), text);
+        }
+    }
+}